@@ -0,0 +1,153 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Batch mode: "gitlet batch [FILE]" runs the commands in FILE, or on the
+ *  standard input, one per line, against one repository loaded once and
+ *  saved once at the end, instead of loading and saving it for each
+ *  command. A line "checkpoint" saves what was done so far.
+ *
+ *  A line is split into words at blanks, as a shell would: quotes (single
+ *  or double) make one word of what they enclose, and a backslash outside
+ *  single quotes takes the next character literally. Blank lines and
+ *  lines starting with # are skipped. After each command's output comes a
+ *  line "# line N: exit S", where S is 0 if the command completed and 1
+ *  if it failed. A failed command, or a line that cannot be split, ends
+ *  the batch: a failed command may have left its changes half made, so
+ *  nothing done since the last checkpoint is saved. A line "# rolled
+ *  back lines M-N" (or "line N") names the lines so undone, if any, and
+ *  gitlet exits with status 1.
+ *  @author aarini
+ */
+class GitBatch {
+
+    /** Runs "gitlet batch" with the arguments ARGS after "batch": the name
+     *  of the script, if it is not to be read from the standard input.
+     *  Returns false if the script ended with a failed command. */
+    static boolean main(String... args) {
+        if (args.length > 1) {
+            System.out.println("Incorrect operands.");
+            return true;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                 args.length == 0 ? System.in : new FileInputStream(args[0]),
+                 StandardCharsets.UTF_8))) {
+            return run(in);
+        } catch (IOException excp) {
+            System.out.println("Cannot read batch script.");
+            return true;
+        }
+    }
+
+    /** Runs the script read from IN. Returns false if it ended with a
+     *  failed command. Options such as --jobs on a line apply to that
+     *  line only. */
+    private static boolean run(BufferedReader in) throws IOException {
+        GitTree tree = Main.start();
+        int jobs = GitWorkTree.parallelism();
+        int number = 0;
+        int unsaved = 0;
+        int done = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            number += 1;
+            List<String> words = split(line);
+            if (line.trim().startsWith("#")
+                || words != null && words.isEmpty()) {
+                continue;
+            }
+            int status = OK;
+            boolean checkpoint = false;
+            if (words == null) {
+                System.out.println("Incorrect operands.");
+                status = FAILED;
+            } else if (words.size() == 1 && words.get(0).equals(CHECKPOINT)) {
+                Main.save(tree);
+                checkpoint = true;
+            } else {
+                try {
+                    String[] args = Main.setOptions(words.toArray(new String[0]));
+                    if (args != null && !Main.isNull(args)) {
+                        tree = Main.execute(tree, args);
+                    }
+                } catch (RuntimeException excp) {
+                    System.out.println(excp.getMessage());
+                    status = FAILED;
+                } finally {
+                    GitWorkTree.setParallelism(jobs);
+                }
+            }
+            System.out.println("# line " + number + ": exit " + status);
+            if (status != OK) {
+                if (unsaved > 0 && unsaved == done) {
+                    System.out.println("# rolled back line " + done);
+                } else if (unsaved > 0) {
+                    System.out.println("# rolled back lines " + unsaved
+                                       + "-" + done);
+                }
+                return false;
+            }
+            if (checkpoint) {
+                unsaved = 0;
+            } else if (unsaved == 0) {
+                unsaved = number;
+            }
+            done = number;
+        }
+        Main.save(tree);
+        return true;
+    }
+
+    /** Returns LINE split into words, or null if it ends inside quotes
+     *  or after a backslash. */
+    static List<String> split(String line) {
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+                continue;
+            }
+            if (word == null) {
+                word = new StringBuilder();
+            }
+            if (c == quote) {
+                quote = 0;
+            } else if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+            } else if (c == '\\' && quote != '\'') {
+                i += 1;
+                if (i == line.length()) {
+                    return null;
+                }
+                word.append(line.charAt(i));
+            } else {
+                word.append(c);
+            }
+        }
+        if (quote != 0) {
+            return null;
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /** The line that saves the repository. */
+    static final String CHECKPOINT = "checkpoint";
+    /** Status of a command that completed. */
+    private static final int OK = 0;
+    /** Status of a command that failed. */
+    private static final int FAILED = 1;
+}
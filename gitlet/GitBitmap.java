@@ -0,0 +1,244 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** A compressed set of non-negative ints, laid out as in Roaring bitmaps:
+ *  values are grouped by their high 16 bits, and each group is kept as a
+ *  sorted array of its low 16 bits while it is sparse, or as a plain
+ *  65536-bit bitmap once it holds more than ARRAY_MAX values. Sets of
+ *  commit-graph positions are mostly long dense runs, so they take a few
+ *  bytes per thousand commits and are combined a word at a time.
+ *  @author aarini
+ */
+class GitBitmap {
+
+    /** An empty set. */
+    GitBitmap() {
+        _keys = new char[4];
+        _containers = new Object[4];
+        _size = 0;
+    }
+
+    /** Adds VALUE to this set. */
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new char[] {low});
+            return;
+        }
+        Object c = _containers[i];
+        if (c instanceof long[]) {
+            ((long[]) c)[low >>> 6] |= 1L << low;
+            return;
+        }
+        char[] arr = (char[]) c;
+        int j = Arrays.binarySearch(arr, low);
+        if (j >= 0) {
+            return;
+        }
+        j = -j - 1;
+        if (arr.length + 1 > ARRAY_MAX) {
+            long[] words = words(arr);
+            words[low >>> 6] |= 1L << low;
+            _containers[i] = words;
+            return;
+        }
+        char[] grown = new char[arr.length + 1];
+        System.arraycopy(arr, 0, grown, 0, j);
+        grown[j] = low;
+        System.arraycopy(arr, j, grown, j + 1, arr.length - j);
+        _containers[i] = grown;
+    }
+
+    /** Returns true if VALUE is in this set. */
+    boolean contains(int value) {
+        int i = find((char) (value >>> 16));
+        if (i < 0) {
+            return false;
+        }
+        char low = (char) value;
+        Object c = _containers[i];
+        if (c instanceof long[]) {
+            return (((long[]) c)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) c, low) >= 0;
+    }
+
+    /** Adds all values in OTHER to this set. */
+    void or(GitBitmap other) {
+        for (int k = 0; k < other._size; k += 1) {
+            char key = other._keys[k];
+            int i = find(key);
+            if (i < 0) {
+                insert(-i - 1, key, copy(other._containers[k]));
+            } else {
+                long[] words = words(_containers[i]);
+                long[] more = words(other._containers[k]);
+                for (int w = 0; w < WORDS; w += 1) {
+                    words[w] |= more[w];
+                }
+                _containers[i] = compact(words);
+            }
+        }
+    }
+
+    /** Returns the number of values in this set. */
+    int cardinality() {
+        int n = 0;
+        for (int k = 0; k < _size; k += 1) {
+            n += cardinality(_containers[k]);
+        }
+        return n;
+    }
+
+    /** Returns the largest value in this set, or -1 if it is empty. */
+    int last() {
+        if (_size == 0) {
+            return -1;
+        }
+        int high = _keys[_size - 1] << 16;
+        Object c = _containers[_size - 1];
+        if (c instanceof char[]) {
+            char[] arr = (char[]) c;
+            return high | arr[arr.length - 1];
+        }
+        long[] words = (long[]) c;
+        int w = WORDS - 1;
+        while (words[w] == 0) {
+            w -= 1;
+        }
+        return high | (w << 6) | (63 - Long.numberOfLeadingZeros(words[w]));
+    }
+
+    /** Writes this set to OUT. */
+    void write(DataOutput out) throws IOException {
+        GitCodec.writeVarLong(out, _size);
+        for (int k = 0; k < _size; k += 1) {
+            out.writeChar(_keys[k]);
+            Object c = _containers[k];
+            if (c instanceof char[]) {
+                char[] arr = (char[]) c;
+                GitCodec.writeVarLong(out, arr.length);
+                for (char low : arr) {
+                    out.writeChar(low);
+                }
+            } else {
+                GitCodec.writeVarLong(out, 0);
+                for (long word : (long[]) c) {
+                    out.writeLong(word);
+                }
+            }
+        }
+    }
+
+    /** Returns a set read from IN, as written by write. */
+    static GitBitmap read(DataInput in) throws IOException {
+        GitBitmap result = new GitBitmap();
+        int n = (int) GitCodec.readVarLong(in);
+        for (int k = 0; k < n; k += 1) {
+            char key = in.readChar();
+            int len = (int) GitCodec.readVarLong(in);
+            Object c;
+            if (len > 0) {
+                char[] arr = new char[len];
+                for (int j = 0; j < len; j += 1) {
+                    arr[j] = in.readChar();
+                }
+                c = arr;
+            } else {
+                long[] words = new long[WORDS];
+                for (int w = 0; w < WORDS; w += 1) {
+                    words[w] = in.readLong();
+                }
+                c = words;
+            }
+            result.insert(result._size, key, c);
+        }
+        return result;
+    }
+
+    /** Returns the index of KEY in _keys, or -(insertion point) - 1. */
+    private int find(char key) {
+        return Arrays.binarySearch(_keys, 0, _size, key);
+    }
+
+    /** Inserts container C for KEY at index I. */
+    private void insert(int i, char key, Object c) {
+        if (_size == _keys.length) {
+            _keys = Arrays.copyOf(_keys, 2 * _size);
+            _containers = Arrays.copyOf(_containers, 2 * _size);
+        }
+        System.arraycopy(_keys, i, _keys, i + 1, _size - i);
+        System.arraycopy(_containers, i, _containers, i + 1, _size - i);
+        _keys[i] = key;
+        _containers[i] = c;
+        _size += 1;
+    }
+
+    /** Returns container C as a new bitmap of WORDS words. */
+    private static long[] words(Object c) {
+        if (c instanceof long[]) {
+            return ((long[]) c).clone();
+        }
+        long[] words = new long[WORDS];
+        for (char low : (char[]) c) {
+            words[low >>> 6] |= 1L << low;
+        }
+        return words;
+    }
+
+    /** Returns the smaller form of the container holding WORDS. */
+    private static Object compact(long[] words) {
+        int n = 0;
+        for (long word : words) {
+            n += Long.bitCount(word);
+        }
+        if (n > ARRAY_MAX) {
+            return words;
+        }
+        char[] arr = new char[n];
+        n = 0;
+        for (int w = 0; w < WORDS; w += 1) {
+            for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                arr[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(bits));
+            }
+        }
+        return arr;
+    }
+
+    /** Returns a copy of container C. */
+    private static Object copy(Object c) {
+        return c instanceof long[] ? ((long[]) c).clone() : ((char[]) c).clone();
+    }
+
+    /** Returns the number of values in container C. */
+    private static int cardinality(Object c) {
+        if (c instanceof char[]) {
+            return ((char[]) c).length;
+        }
+        int n = 0;
+        for (long word : (long[]) c) {
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    /** Largest number of values kept as a sorted array. */
+    private static final int ARRAY_MAX = 4096;
+    /** Number of words in a bitmap container. */
+    private static final int WORDS = 1024;
+
+    /** High 16 bits of the values of each container, in increasing
+     *  order. */
+    private char[] _keys;
+    /** Containers: char[] sorted arrays or long[WORDS] bitmaps. */
+    private Object[] _containers;
+    /** Number of containers. */
+    private int _size;
+}
@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Reachability bitmaps, kept in .gitlet/bitmaps: for recently used
+ *  commits (in practice, branch heads), the set of commit-graph positions
+ *  of all their ancestors, as a GitBitmap. Graph positions never change
+ *  and commits are immutable, so a bitmap never goes stale. The bitmap of
+ *  a commit without one is found by walking back only until commits that
+ *  have one, and OR-ing theirs in, so after a few commits on a branch
+ *  only those few commits are visited. "Is A an ancestor of B" is then a
+ *  single bit test, and "commits in A not in B" one AND-NOT.
+ *  @author aarini
+ */
+class GitBitmapIndex {
+
+    /** The bitmap file. */
+    static final File BITMAP_FILE = Utils.join(".gitlet", "bitmaps");
+
+    /** Returns true if the commit with ID A is an ancestor of (or the same
+     *  as) the commit with ID B. */
+    static boolean isAncestor(String a, String b) {
+        int pa = GitCommitGraph.position(a);
+        return pa >= 0 && reachable(b).contains(pa);
+    }
+
+    /** Returns the positions of the commit with ID and all its ancestors.
+     *  The result is kept for later commands, and must not be modified. */
+    static GitBitmap reachable(String id) {
+        load();
+        int start = GitCommitGraph.position(id);
+        if (start < 0) {
+            return new GitBitmap();
+        }
+        GitBitmap result = _bitmaps.get(start);
+        if (result != null) {
+            return result;
+        }
+        result = new GitBitmap();
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        todo.push(start);
+        while (!todo.isEmpty()) {
+            int pos = todo.pop();
+            if (result.contains(pos)) {
+                continue;
+            }
+            GitBitmap known = _bitmaps.get(pos);
+            if (known != null) {
+                result.or(known);
+                continue;
+            }
+            result.add(pos);
+            for (int p : new int[] {GitCommitGraph.parent1(pos),
+                                    GitCommitGraph.parent2(pos)}) {
+                if (p >= 0 && !result.contains(p)) {
+                    todo.push(p);
+                }
+            }
+        }
+        _bitmaps.put(start, result);
+        _dirty = true;
+        return result;
+    }
+
+    /** Writes the bitmaps back if any were computed during this
+     *  command. */
+    static void flush() {
+        if (!_dirty) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            GitCodec.writeVarLong(out, _bitmaps.size());
+            for (Map.Entry<Integer, GitBitmap> e : _bitmaps.entrySet()) {
+                GitCodec.writeHash(out, GitCommitGraph.id(e.getKey()));
+                e.getValue().write(out);
+            }
+            out.close();
+            GitJournal.replaceCache(BITMAP_FILE, bytes.toByteArray());
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing bitmaps.");
+        }
+        _dirty = false;
+    }
+
+    /** Forgets the bitmaps read or computed, so that they are read
+     *  afresh when next used. */
+    static void reset() {
+        _bitmaps = null;
+        _dirty = false;
+    }
+
+    /** Reads BITMAP_FILE, unless already done. Bitmaps that do not match
+     *  the commit graph (because it was rebuilt) are dropped, and an
+     *  unreadable file is ignored, since it only caches what can be
+     *  recomputed. */
+    private static void load() {
+        if (_bitmaps != null) {
+            return;
+        }
+        _bitmaps = new LinkedHashMap<Integer, GitBitmap>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Integer, GitBitmap> eldest) {
+                return size() > MAX_BITMAPS;
+            }
+        };
+        if (!BITMAP_FILE.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Utils.readContents(BITMAP_FILE)));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION) {
+                return;
+            }
+            int n = (int) GitCodec.readVarLong(in);
+            for (int i = 0; i < n; i += 1) {
+                String id = GitCodec.readHash(in);
+                GitBitmap bitmap = GitBitmap.read(in);
+                int pos = GitCommitGraph.position(id);
+                if (pos >= 0 && bitmap.last() == pos) {
+                    _bitmaps.put(pos, bitmap);
+                }
+            }
+        } catch (IOException excp) {
+            _bitmaps.clear();
+        }
+    }
+
+    /** Magic number starting the bitmap file. */
+    private static final byte[] MAGIC = {'G', 'L', 'B'};
+    /** Version of the bitmap format. */
+    private static final int VERSION = 1;
+    /** Largest number of bitmaps kept. */
+    static final int MAX_BITMAPS = 32;
+
+    /** Bitmaps by commit-graph position, least recently used first, or
+     *  null if not yet read. */
+    private static Map<Integer, GitBitmap> _bitmaps;
+    /** True if a bitmap was computed since the file was read. */
+    private static boolean _dirty;
+}
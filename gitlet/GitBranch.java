@@ -1,39 +1,39 @@
 package gitlet;
-import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
 
 
 /**
- * This class represents a branch in GitTree data structure.
- * Contains pointers to GitCommits.
+ * This class represents a branch in GitTree data structure: a name
+ * and the ID of its head commit, kept in the ref store (see GitRefs).
+ * The head commit and the staging area are loaded when first needed.
  * @author aarini
  */
-public class GitBranch implements Serializable {
+public class GitBranch {
     /** GitBranch constructor with name BRANCHNAME, pointer
-     * to HEAD GitCommit, and pointer to a GitStage.*/
+     * to HEAD GitCommit.*/
     public GitBranch(String branchName, GitCommit head) {
         _name = branchName;
-        _latestGitCommit = head;
-        _gitStage = new GitStage(head);
-        _commitIDs = new HashMap<>();
-        _abbID = new HashMap<>();
-        _commitIDs.put(head.getId(), head);
+        setLatestGitCommit(head);
+    }
+
+    /** GitBranch constructor with name BRANCHNAME, whose head is the
+     * commit with HEADID, read when first needed.*/
+    public GitBranch(String branchName, String headID) {
+        _name = branchName;
+        _headID = headID;
     }
 
     /** Creates a GitCommit with commit message MSG.*/
     public void gitCommit(String msg) {
-        _latestGitCommit = new GitCommit(_gitStage, msg);
-        _commitIDs.put(_latestGitCommit.getId(), _latestGitCommit);
+        setLatestGitCommit(new GitCommit(getGitStage(), msg));
         _gitStage = new GitStage(this.getLatestGitCommit());
     }
 
     /** Creates a GitCommit (merge commit) with commit message MSG and parents
      * FPAR and SPAR.*/
     public void gitCommit(String msg, String fPar, String sPar) {
-        _latestGitCommit = new GitCommit(getGitStage(), msg, fPar, sPar);
-        _commitIDs.put(_latestGitCommit.getId(), _latestGitCommit);
+        setLatestGitCommit(new GitCommit(getGitStage(), msg, fPar, sPar));
         _gitStage = new GitStage(getLatestGitCommit());
     }
 
@@ -48,72 +48,67 @@ public class GitBranch implements Serializable {
     }
 
 
-    /**Returns the ancestors of BCOM.*/
+    /**Returns the ancestors of BCOM, BCOM itself included but not the
+     * initial commit, newest first. They are found in the commit graph.*/
     public ArrayList<GitCommit> getAnces(GitCommit bCom) {
         ArrayList<GitCommit> par = new ArrayList<>();
-        ArrayList<GitCommit> parM = new ArrayList<>();
         if (bCom == null) {
-            String a;
-        } else {
-            String bId = bCom.getId();
-            if (bId.equals("")) {
-                return par;
-            }
-            if (bCom.getMsg().equals("initial commit")) {
-                return par;
-            }
-            if (bCom.isMerged()) {
-                parM = getAnces(_commitIDs.get(bCom.getSecParentS()));
-            }
-            ArrayList<GitCommit> result = getAnces(bCom.getParent());
-            par.add(bCom);
-            par.addAll(result);
+            return par;
         }
-        if (!parM.isEmpty()) {
-            par.addAll(parM);
+        for (String id : GitCommitGraph.ancestors(bCom.getId())) {
+            if (GitCommitGraph.parent1(GitCommitGraph.position(id)) >= 0) {
+                par.add(GitCommitStore.load(id));
+            }
         }
         return par;
     }
 
-
-
     /** Returns the name of the branch. */
     public String getName() {
         return this._name;
     }
     /** Returns the head of the branch, or the newest GitCommit.*/
     public GitCommit getLatestGitCommit() {
+        if (_latestGitCommit == null) {
+            _latestGitCommit = GitCommitStore.load(_headID);
+        }
         return _latestGitCommit;
     }
+    /** Returns the SHA ID of the head of the branch.*/
+    public String getHeadID() {
+        return _headID;
+    }
     /** Set latest GitCommit to COM.*/
     public void setLatestGitCommit(GitCommit com) {
         _latestGitCommit = com;
+        _headID = com.getId();
     }
-    /** Returns the current GitStage. */
+    /** Returns the current GitStage, creating an empty one if this
+     * branch was just read from the ref store.*/
     public GitStage getGitStage() {
+        if (_gitStage == null) {
+            _gitStage = new GitStage(getLatestGitCommit());
+        }
         return _gitStage;
     }
-    /** Stage file F.*/
-    public void gitStageFile(String f) {
-        _gitStage.add(f);
+    /** Stage the files FILES.*/
+    public void gitStageFiles(Collection<String> files) {
+        getGitStage().add(files);
     }
     /** removes file N from the staging area.*/
     public void remove(String n) {
-        _gitStage.remove(n);
+        getGitStage().remove(n);
     }
     /** Set GitStage to S.*/
     public void setGitStage(GitStage s) {
         _gitStage = s;
     }
-
-    /** Mapping of Abbreviated IDs to their SHA-1 ID's.*/
-    private HashMap<String, String> _abbID;
-    /** Mapping of SHA-1 ID's to their GitCommits.*/
-    private Map<String, GitCommit> _commitIDs;
     /** Name of the branch.*/
     private String _name;
-    /** Head of the branch.*/
+    /** SHA ID of the head of the branch.*/
+    private String _headID;
+    /** Head of the branch, loaded on demand.*/
     private GitCommit _latestGitCommit;
-    /** Picture of the current staging area.*/
+    /** Picture of the current staging area, kept in its own record.*/
     private GitStage _gitStage;
 }
@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** Helpers shared by Gitlet's compact binary record formats: unsigned
+ *  and zig-zag variable-length integers, raw 20-byte SHA-1 IDs and
+ *  length-prefixed UTF-8 strings.
+ *  @author aarini
+ */
+class GitCodec {
+
+    /** Number of bytes in a raw SHA-1 ID. */
+    static final int HASH_BYTES = 20;
+
+    /** Writes non-negative V to OUT, seven bits per byte, low bits
+     *  first. */
+    static void writeVarLong(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7fL) != 0) {
+            out.writeByte((int) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /** Returns the next variable-length integer from IN. */
+    static long readVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed variable-length integer");
+    }
+
+    /** Returns the variable-length integer at the position of IN,
+     *  advancing past it. */
+    static long readVarLong(ByteBuffer in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64 && in.hasRemaining(); shift += 7) {
+            int b = in.get() & 0xff;
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed variable-length integer");
+    }
+
+    /** Writes V, which may be negative, to OUT in zig-zag form. */
+    static void writeSignedVarLong(DataOutput out, long v)
+        throws IOException {
+        writeVarLong(out, (v << 1) ^ (v >> 63));
+    }
+
+    /** Returns the next zig-zag variable-length integer from IN. */
+    static long readSignedVarLong(DataInput in) throws IOException {
+        long v = readVarLong(in);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /** Writes the 40-digit hex ID as 20 raw bytes to OUT. */
+    static void writeHash(DataOutput out, String id) throws IOException {
+        out.write(hexToBytes(id));
+    }
+
+    /** Returns the next raw 20-byte ID from IN as 40 hex digits. */
+    static String readHash(DataInput in) throws IOException {
+        byte[] raw = new byte[HASH_BYTES];
+        in.readFully(raw);
+        return bytesToHex(raw);
+    }
+
+    /** Writes S to OUT as its UTF-8 length followed by its bytes. */
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /** Returns the next length-prefixed UTF-8 string from IN. */
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the bytes denoted by the even-length hex string HEX. */
+    static byte[] hexToBytes(String hex) {
+        byte[] raw = new byte[hex.length() / 2];
+        for (int i = 0; i < raw.length; i += 1) {
+            raw[i] = (byte) ((Character.digit(hex.charAt(2 * i), 16) << 4)
+                    | Character.digit(hex.charAt(2 * i + 1), 16));
+        }
+        return raw;
+    }
+
+    /** Returns RAW as lower-case hex digits. */
+    static String bytesToHex(byte[] raw) {
+        return Utils.toHex(raw);
+    }
+}
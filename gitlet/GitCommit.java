@@ -1,11 +1,9 @@
 package gitlet;
 
 import java.io.*;
-import java.text.*;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.Path;
 
 /** Class describing a Gitlet Commit.
  * @author aarini
@@ -15,52 +13,31 @@ public class GitCommit implements Serializable {
     /** GitCommit constructor, using information from STAGE.*/
     public GitCommit(GitStage stage) {
         comStage = stage;
-        addedFiles = new HashMap<>();
-        fileSHAs = new HashMap<>();
+        GitCommit parent = null;
         if (stage != null) {
             time = new Date(); parent = stage.getlatestCom();
+            parentID = parent == null ? null : parent.getId();
         } else {
-            Date date = null;
-            String dateStr = "Wed Dec 31 16:00:00 1969 -0800";
-            SimpleDateFormat dateF = new SimpleDateFormat(
-                    "EEE MMM d HH:mm:ss yyyy Z");
-            try {
-                date = dateF.parse(dateStr);
-            } catch (ParseException p) {
-                System.out.println(p.getMessage());
-            }
-            time = date;
+            time = new Date(0);
         }
 
-        if (parent != null) {
-            addedFiles.putAll(parent.getAddedFilesMap());
+        if (stage != null) {
             if (stage.getToBeRemoved() != null) {
                 for (String f : stage.getToBeRemoved()) {
-                    addedFiles.remove(f);
-                }
-            }
-            fileSHAs.putAll(parent.fileSHAs);
-        }
-        if (stage != null) {
-            if (stage.getLatestStaged() != null) {
-                for (String f : stage.getLatestStaged()) {
-                    File f0 = new File(f);
-                    if ((f0).exists()) {
-                        addedFiles.put(f, Utils.sha1(Utils.readContentsAsString(f0)));
-                        fileSHAs.put(f, Utils.sha1(Utils.readContentsAsString(f0)));
-                    }
+                    changes.put(f, null);
                 }
             }
             if (stage.getStagedFiles() != null) {
                 for (String f : stage.getStagedFiles()) {
-                    File f0 = new File(f);
-                    if ((f0).exists()) {
-                        addedFiles.put(f, Utils.sha1(Utils.readContentsAsString(f0)));
-                        fileSHAs.put(f, Utils.sha1(Utils.readContentsAsString(f0)));
+                    String sha = stage.stagedSHA(f);
+                    if (sha != null) {
+                        changes.put(f, sha);
                     }
                 }
             }
         }
+        treeID = GitDirectory.update(parent == null ? null
+                : parent.getTreeID(), changes);
         isMerged = false;
     }
 
@@ -70,147 +47,291 @@ public class GitCommit implements Serializable {
         this(stage); msg = message;
         Boolean tru = false;
         if (stage != null) {
-            id = Utils.sha1(stage.getLatestStaged().toString(),
-                    getParent().getId(), getMsg(), getTime().toString());
+            id = commitId(stage, getParent().getId(), getMsg(), getTime());
             tru = !stage.getToBeRemoved().isEmpty();
         } else {
             id = Utils.sha1(getTime().toString(), getMsg());
         }
-        commitToDirectory(stage);
+        comDir = GitObjects.OBJECTS_DIR + seper;
         if (!unchangedCommit() || tru) {
-            comDir = ".gitlet" + seper + "objects" + seper + getId() + seper;
             createDir();
         } else if (stage.getLatestStaged() == null && stage.getToBeRemoved() == null) {
             System.out.println("No changes added to the commit.");
         }
     }
 
+    /** Returns the ID of a commit of the files in STAGE with parent
+     * PARENTID, message MSG and time TIME. It hashes the names of the
+     * staged files in the order they were staged, so the stage's set of
+     * staged files must print the same way for IDs to stay stable.*/
+    static String commitId(GitStage stage, String parentID, String msg,
+                           Date time) {
+        return Utils.sha1(stage.getLatestStaged().toString(), parentID, msg,
+                          time.toString());
+    }
+
     /** GitCommit constructor for merge commits, using info from STAGE,
-     * with commit message MESSAGE, and parents FPAR and SPAR.*/
+     * with commit message MESSAGE, and parents with full IDs FPAR and SPAR.*/
     public GitCommit(GitStage stage, String message, String fPar, String sPar) {
         this(stage, message);
         isMerged = true;
-        parents = "Merge: " + fPar + " " + sPar;
+        parents = "Merge: " + fPar.substring(0, 7) + " " + sPar.substring(0, 7);
         parentS = fPar;
         secParentS = sPar;
     }
 
+    /** GitCommit constructor for a commit read back from disk, with SHA
+     * ID, message MESSAGE, TIME, parent PARENT, second parent SECPARENT
+     * (null unless a merge) and top directory TREE. Records from before
+     * commits had directories give TREE as null and instead file SHA IDs
+     * SHAS, of which only those named in TRACKED are still tracked.*/
+    GitCommit(String id, String message, Date time, String parent,
+              String secParent, String tree, Map<String, String> shas,
+              Set<String> tracked) {
+        this.id = id;
+        this.treeID = tree;
+        this.msg = message;
+        this.time = time;
+        this.parentID = parent;
+        this.comDir = GitObjects.OBJECTS_DIR + seper;
+        if (shas != null) {
+            files = new TreeMap<>();
+            for (String name : tracked) {
+                files.put(name, GitObjectId.fromHex(shas.get(name)));
+            }
+        }
+        isMerged = secParent != null;
+        if (isMerged) {
+            parents = "Merge: " + parent.substring(0, 7) + " "
+                    + secParent.substring(0, 7);
+            parentS = parent;
+            secParentS = secParent;
+        }
+    }
+
+    /** Returns this commit in Gitlet's compact binary commit format:
+     * a magic number and VERSION, then raw 20-byte IDs and
+     * variable-length integers, including the generation number, ending
+     * with the ID of the commit's top directory. Its files are kept in
+     * the directories, not here.*/
+    public byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            int flags = (parentID != null ? 1 : 0) | (isMerged ? 2 : 0);
+            out.writeByte(flags);
+            GitCodec.writeHash(out, id);
+            if (parentID != null) {
+                GitCodec.writeHash(out, parentID);
+            }
+            if (isMerged) {
+                GitCodec.writeHash(out, secParentS);
+            }
+            GitCodec.writeVarLong(out, getGeneration());
+            GitCodec.writeSignedVarLong(out, time.getTime());
+            GitCodec.writeString(out, msg);
+            GitCodec.writeHash(out, getTreeID());
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding commit.");
+        }
+    }
+
+    /** Returns true if BYTES start with the binary commit format's magic
+     * number.*/
+    static boolean isEncoded(byte[] bytes) {
+        if (bytes.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i += 1) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the commit encoded in BYTES by encode(). Versions 1 and 2
+     * also held a table of all files, which versions 3 and later read
+     * from the commit's directories instead.*/
+    static GitCommit decode(byte[] bytes) {
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(bytes));
+            in.skipBytes(MAGIC.length);
+            int version = in.readUnsignedByte();
+            if (version < 1 || version > VERSION) {
+                throw Utils.error("Unknown commit format version %d.", version);
+            }
+            int flags = in.readUnsignedByte();
+            String id = GitCodec.readHash(in);
+            String parent = (flags & 1) != 0 ? GitCodec.readHash(in) : null;
+            String secParent = (flags & 2) != 0 ? GitCodec.readHash(in) : null;
+            long gen = version >= 4 ? GitCodec.readVarLong(in) : 0;
+            Date time = new Date(GitCodec.readSignedVarLong(in));
+            String message = GitCodec.readString(in);
+            String tree = version >= 2 ? GitCodec.readHash(in) : null;
+            if (version >= 3) {
+                GitCommit com = new GitCommit(id, message, time, parent,
+                        secParent, tree, null, null);
+                com.generation = gen;
+                return com;
+            }
+            int n = (int) GitCodec.readVarLong(in);
+            HashMap<String, String> shas = new HashMap<>();
+            HashSet<String> tracked = new HashSet<>();
+            String prev = "";
+            for (int i = 0; i < n; i += 1) {
+                long prefix = GitCodec.readVarLong(in);
+                String name = prev.substring(0, (int) (prefix >>> 1))
+                        + GitCodec.readString(in);
+                shas.put(name, GitCodec.readHash(in));
+                if ((prefix & 1) != 0) {
+                    tracked.add(name);
+                }
+                prev = name;
+            }
+            return new GitCommit(id, message, time, parent, secParent,
+                    tree, shas, tracked);
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt commit record.");
+        }
+    }
+
     /** Returns true if this commit contains FILE.*/
     public boolean contains(String file) {
-        return (addedFiles != null && addedFiles.containsKey(file));
+        return getSHA(file) != null;
     }
-    /** Returns file with name FILE. */
+    /** Returns the SHA ID of this commit's version of FILE, or null if it
+     * does not track FILE. Looks FILE up through the directories unless
+     * all files were already listed.*/
+    public String getSHA(String file) {
+        if (files != null) {
+            GitObjectId sha = files.get(file);
+            return sha == null ? null : sha.toString();
+        }
+        return GitDirectory.lookup(getTreeID(), file);
+    }
+    /** Returns the stored blob holding this commit's version of FILE. */
     public File getFile(String file) {
-        return new File(comDir + fileSHAs.get(file) + seper + file);
+        return GitObjects.objectFile(getSHA(file));
     }
 
     /** Returns true if FILE has not been modified between
      * HEAD commit and this commit.*/
     public boolean unModified(GitCommit head, String file) {
-        return (this.fileSHAs.containsKey(file)
-                && (head.getfileSHAs()).containsKey(file))
-                && (((head.getfileSHAs().get(file)).
-                equals(this.fileSHAs.get(file)))
+        return (this.contains(file) && head.contains(file))
+                && ((head.getSHA(file).equals(this.getSHA(file)))
                 || (this.getFile(file).isFile() && head.getFile(file).isFile()
-                && ((Utils.readContentsAsString(this.getFile(file))).
-                equals(Utils.readContentsAsString(head.getFile(file))))));
+                && Arrays.equals(Utils.readContents(this.getFile(file)),
+                Utils.readContents(head.getFile(file)))));
     }
 
     /** Returns true if current commit is the same as its parent.*/
     public boolean unchangedCommit() {
-        if (parent != null) {
-            Set pFls = parent.getAddedFiles();
-            Set cFls = this.getAddedFiles();
-            if (cFls.size() == pFls.size()) {
-                for (String name : addedFiles.keySet()) {
-                    if (pFls.contains(name)) {
-                        if (!fileSHAs.get(name).
-                                equals(parent.getfileSHAs().get(name))) {
-                            return false;
-                        }
-                    } else {
-                        return false;
-                    }
-                }
-                return true;
-            }
-        }
-        return false;
+        GitCommit parent = getParent();
+        return parent != null && parent.getTreeID().equals(getTreeID());
     }
 
     /** Checks out FILE.*/
     public void checkout(String file) {
         File f = new File(file);
-        File f0 = new File(comDir + fileSHAs.get(file) + seper + f);
+        String sha = getSHA(file);
         try {
-            Utils.writeContents(f, Utils.readContentsAsString(f0));
+            GitObjects.copyTo(sha, f);
+            GitIndex.update(f, sha);
         } catch (GitletException e) {
             System.out.println(e.getMessage());
         }
     }
 
-    /** Checks out the current commit.*/
-    public void checkout() {
-        Set<String> added = this.addedFiles.keySet();
-        for (String a : added) {
-            checkout(a);
-        }
-        String cP = (new File(comDir)).getAbsolutePath();
-        File[] f0 = (new File(cP.substring(0,
-                cP.length() - comDir.length() + 1))).listFiles();
-        if (f0 != null) {
-            for (File f: f0) {
-                if (!added.contains(f.getName())) {
-                    Utils.restrictedDelete(f);
-                }
+    /** Checks out the current commit over a working directory holding
+     * the files of commit FROM, except for those named in STAGED. Only
+     * the directories whose IDs differ between the two commits are
+     * compared; in the others, only files missing from the working
+     * directory (deleted or removed) are restored. Staged files are
+     * always replaced or deleted.*/
+    public void checkout(GitCommit from, Collection<String> staged) {
+        checkoutTree(from == null ? null : GitObjectId.parse(from.getTreeID()),
+                     GitObjectId.parse(getTreeID()), "");
+        for (String name : staged) {
+            if (contains(name)) {
+                checkout(name);
+            } else {
+                GitWorkTree.delete(name);
             }
         }
     }
 
-    /** Creates a directory, saving the files.*/
-    public void createDir() {
-        (new File(comDir)).mkdirs();
-        if (addedFiles.isEmpty()) {
+    /** Replaces the files below directory FROMID, whose paths start with
+     * PREFIX, by those below directory TOID. Where the IDs are the same,
+     * only restores missing files.*/
+    private static void checkoutTree(GitObjectId fromID, GitObjectId toID,
+                                     String prefix) {
+        if (Objects.equals(fromID, toID)) {
+            restoreMissing(toID, prefix);
             return;
         }
-        for (String name : addedFiles.keySet()) {
-            File f = new File(name);
-            Path p = Paths.get(comDir + fileSHAs.get(name) + seper + name);
-            try {
-                Files.createDirectories(p.getParent());
-                Files.createFile(p);
-            } catch (IOException e) {
-                System.out.println(e.getMessage());
+        GitDirectory from = GitDirectory.read(fromID);
+        GitDirectory to = GitDirectory.read(toID);
+        for (Map.Entry<String, GitObjectId> e : from.files().entrySet()) {
+            if (!to.files().containsKey(e.getKey())) {
+                GitWorkTree.delete(prefix + e.getKey());
+            }
+        }
+        for (Map.Entry<String, GitObjectId> e : from.dirs().entrySet()) {
+            if (!to.dirs().containsKey(e.getKey())) {
+                checkoutTree(e.getValue(), null, prefix + e.getKey() + "/");
             }
-            if (f.isFile()) {
-                Utils.writeContents(p.toFile(), Utils.readContentsAsString(f));
-                addedFiles.put(name, comDir);
+        }
+        for (Map.Entry<String, GitObjectId> e : to.files().entrySet()) {
+            File f = new File(prefix + e.getKey());
+            if (!e.getValue().equals(from.files().get(e.getKey()))
+                    || !f.isFile()) {
+                String sha = e.getValue().toString();
+                GitObjects.copyTo(sha, f);
+                GitIndex.update(f, sha);
             }
         }
+        for (Map.Entry<String, GitObjectId> e : to.dirs().entrySet()) {
+            checkoutTree(from.dirs().get(e.getKey()), e.getValue(),
+                    prefix + e.getKey() + "/");
+        }
     }
 
-    /** Adds files to be tracked, from STAGE, to the new commit.*/
-    public void commitToDirectory(GitStage stage) {
-        if (stage == null) {
+    /** Writes each file below directory ID, whose paths start with
+     * PREFIX, that is missing from the working directory.*/
+    private static void restoreMissing(GitObjectId id, String prefix) {
+        if (id == null) {
             return;
-        } else {
-            for (String file : stage.getStagedFiles()) {
-                String id1 = stage.getlatestCom().getfileSHAs().get(file);
-                File f = new File(file);
-                if (f.isFile()) {
-                    String id0 = Utils.sha1(Utils.readContentsAsString(f));
-                    if (fileSHAs.containsKey(file)) {
-                        if (!fileSHAs.get(file).equals(id0)) {
-                            addedFiles.put(file, id);
-                            fileSHAs.replace(file, id0);
-                        }
-                    } else {
-                        addedFiles.put(file, id);
-                        fileSHAs.put(file, id0);
-                    }
-                } else {
-                    continue;
-                }
+        }
+        GitDirectory dir = GitDirectory.read(id);
+        for (Map.Entry<String, GitObjectId> e : dir.files().entrySet()) {
+            File f = new File(prefix + e.getKey());
+            if (!f.isFile()) {
+                String sha = e.getValue().toString();
+                GitObjects.copyTo(sha, f);
+                GitIndex.update(f, sha);
+            }
+        }
+        for (Map.Entry<String, GitObjectId> e : dir.dirs().entrySet()) {
+            restoreMissing(e.getValue(), prefix + e.getKey() + "/");
+        }
+    }
+
+    /** Saves the blobs of the files this commit changed into the object
+     *  store. Blobs are normally stored when files are staged; this only
+     *  covers stages saved before that was done.*/
+    public void createDir() {
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String sha = e.getValue();
+            File f = new File(e.getKey());
+            if (sha != null && !GitObjects.contains(sha) && f.isFile()
+                    && GitIndex.sha1(f).equals(sha)) {
+                GitObjects.put(sha, f);
             }
         }
     }
@@ -219,26 +340,44 @@ public class GitCommit implements Serializable {
      * Returns the working directory's files.
      */
     public File[] wDFiles() {
-        File fx = new File(comDir);
-        int dLen = comDir.length();
-        int abLen = fx.getAbsolutePath().length();
-        String wPath = fx.getAbsolutePath().substring(0, abLen - dLen + 1);
-        File wDir = new File(wPath);
-        File[] fileList = wDir.listFiles();
+        List<String> names = GitWorkTree.files();
+        File[] fileList = new File[names.size()];
+        for (int i = 0; i < fileList.length; i += 1) {
+            fileList[i] = new File(names.get(i));
+        }
         return fileList;
     }
 
     @Override
     public String toString() {
         StringBuilder strBldr = new StringBuilder();
-        strBldr.append("=== \n").append("commit ").append(id).append(" \n");
+        appendTo(strBldr);
+        return strBldr.toString();
+    }
+
+    /** Appends this commit as shown by log to OUT, which can be reused
+     *  from one commit to the next, so that nothing else is built.*/
+    public void appendTo(StringBuilder out) {
+        out.append(HEADER).append(id).append(" \n");
         if (isMerged) {
-            strBldr.append(parents).append("\n");
+            out.append(parents).append("\n");
         }
-        SimpleDateFormat dtForm = new SimpleDateFormat(
-                "EEE MMM d HH:mm:ss yyyy Z");
-        return (strBldr.append("Date: ").append(dtForm.
-                format(time)).append(" \n").append(msg)).toString();
+        out.append("Date: ");
+        DATE_FORMAT.formatTo(time.toInstant(), out);
+        out.append(" \n").append(msg);
+    }
+
+    /** Commits are equal if they have the same SHA ID, since the same
+     *  commit may be read from the store more than once.*/
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof GitCommit && id != null
+                && id.equals(((GitCommit) obj).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id == null ? 0 : id.hashCode();
     }
 
     /** Returns SHA ID of the commit.*/
@@ -257,15 +396,68 @@ public class GitCommit implements Serializable {
     public Date getTime() {
         return time;
     }
-    /** Returns commit's parent.*/
+    /** Returns the ID of the directory holding this commit's tracked
+     *  files, writing the directories to the object store if this commit
+     *  was read from a record that predates them.*/
+    public String getTreeID() {
+        if (treeID == null) {
+            treeID = GitDirectory.write(files);
+        }
+        return treeID;
+    }
+    /** Returns the generation number of this commit: 1 for a commit
+     *  without parents, and otherwise one more than the largest generation
+     *  of its parents, so that a commit's generation is always greater
+     *  than those of all its ancestors. It is computed from the parents
+     *  (without recursion) if this commit's record predates it.*/
+    public long getGeneration() {
+        if (generation > 0) {
+            return generation;
+        }
+        HashMap<String, Long> known = new HashMap<>();
+        ArrayDeque<GitCommit> todo = new ArrayDeque<>();
+        todo.push(this);
+        while (!todo.isEmpty()) {
+            GitCommit com = todo.peek();
+            long max = 0;
+            boolean ready = true;
+            for (String pid : new String[] {com.parentID, com.secParentS}) {
+                GitCommit p = GitCommitStore.load(pid);
+                if (p == null) {
+                    continue;
+                }
+                Long gen = p.generation > 0 ? Long.valueOf(p.generation)
+                        : known.get(pid);
+                if (gen == null) {
+                    todo.push(p);
+                    ready = false;
+                } else {
+                    max = Math.max(max, gen);
+                }
+            }
+            if (ready) {
+                known.put(com.id, max + 1);
+                todo.pop();
+            }
+        }
+        generation = known.get(id);
+        return generation;
+    }
+    /** Returns commit's parent, faulted in through the commit store.
+     *  Commits do not hold on to their parents, so walking a long history
+     *  only keeps the store's bounded cache of commits in memory.*/
     public GitCommit getParent() {
-        return parent;
+        return GitCommitStore.load(parentID);
     }
-    /** Returns commit's parent.*/
+    /** Returns SHA ID of commit's parent, or null for the initial commit.*/
+    public String getParentID() {
+        return parentID;
+    }
+    /** Returns SHA ID of commit's 1st parent, for merge commits.*/
     public String getParentS() {
         return parentS;
     }
-    /** Returns commit's 2nd parent.*/
+    /** Returns SHA ID of commit's 2nd parent, for merge commits.*/
     public String getSecParentS() {
         return secParentS;
     }
@@ -277,17 +469,18 @@ public class GitCommit implements Serializable {
     public void setCommitDirectory(String t) {
         comDir = t;
     }
-    /** Returns File IDs. */
-    public Map<String, String> getfileSHAs() {
-        return fileSHAs;
+    /** Returns the SHA IDs of all tracked files, by name, reading the
+     * whole directory tree on first use. This must not be modified. */
+    public Map<String, GitObjectId> getfileSHAs() {
+        if (files == null) {
+            files = new TreeMap<>();
+            GitDirectory.flatten(getTreeID(), "", files);
+        }
+        return files;
     }
     /** Returns file names.*/
     public Set<String> getAddedFiles() {
-        return addedFiles.keySet();
-    }
-    /** Returns file names map.*/
-    public Map<String, String> getAddedFilesMap() {
-        return addedFiles;
+        return getfileSHAs().keySet();
     }
     /** Returns separator.*/
     public String getSep() {
@@ -302,19 +495,38 @@ public class GitCommit implements Serializable {
         return comUntracked;
     }
 
+    /** Start of every commit as shown by log.*/
+    private static final String HEADER = "=== \ncommit ";
+    /** Format of commit dates, in the local time zone. Unlike
+     *  SimpleDateFormat, it is immutable and thread-safe, so one is
+     *  shared by all commits.*/
+    private static final DateTimeFormatter DATE_FORMAT =
+        DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z")
+            .withZone(ZoneId.systemDefault());
+
+    /** Magic number starting every binary commit record.*/
+    private static final byte[] MAGIC = {'G', 'L', 'C'};
+    /** Version of the binary commit format written by encode.*/
+    static final int VERSION = 4;
+
     /** Commit message.*/
     private String msg;
     /** Commit time.*/
     private Date time;
     /** SHA ID of commit.*/
     private String id;
-    /** Directory the commit is in. */
+    /** Directory of the object store holding the commit's blobs. */
     private String comDir;
-    /** Parent of current commit.*/
-    private GitCommit parent;
-    /** Parent of current commit Str.*/
+    /** SHA ID of the directory holding the tracked files, or null if not
+     *  yet computed.*/
+    private String treeID;
+    /** SHA ID of the parent of current commit.*/
+    private String parentID;
+    /** Generation number, or 0 if not yet known.*/
+    private long generation;
+    /** SHA ID of the 1st parent of a merge commit.*/
     private String parentS;
-    /** 2nd Parent of merge  commit Str.*/
+    /** SHA ID of the 2nd parent of a merge commit.*/
     private String secParentS;
     /** Merge parent IDs for print.*/
     private String parents;
@@ -322,14 +534,16 @@ public class GitCommit implements Serializable {
     private String seper = File.separator;
     /**True if commit is a merge.*/
     private boolean isMerged;
-    /** Mapping of file names to their SHA IDs.*/
-    private Map<String, String> fileSHAs;
-    /** Mapping of added files' name to its commit SHA ID.*/
-    private Map<String, String> addedFiles;
+    /** Mapping of tracked file names to their SHA IDs, or null if not
+     *  yet read from the directories.*/
+    private transient TreeMap<String, GitObjectId> files;
+    /** New SHA IDs of the files changed by this commit, null for those
+     *  it removes. Empty for commits read back from disk.*/
+    private transient TreeMap<String, String> changes = new TreeMap<>();
     /** Arraylist of untracked files.*/
     private ArrayList<String> comUntracked;
     /** Commit Stage.*/
-    private GitStage comStage;
+    private transient GitStage comStage;
 
 
 }
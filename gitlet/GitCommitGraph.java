@@ -0,0 +1,347 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/** The commit graph, kept in .gitlet/commit-graph: for every commit, a
+ *  dense integer position, the positions of its parents and its
+ *  generation number, so that ancestry questions are answered from
+ *  integer arrays without reading any commit records. The file is a
+ *  header followed by fixed-size records, one per commit, each holding
+ *  the commit's raw ID, its two parent positions (-1 if absent) and its
+ *  generation. Records are only ever appended, parents before children,
+ *  so a commit's position never changes and is always greater than those
+ *  of its ancestors. The file is memory-mapped when first needed.
+ *  @author aarini
+ */
+class GitCommitGraph {
+
+    /** The commit-graph file. */
+    static final File GRAPH_FILE = Utils.join(".gitlet", "commit-graph");
+
+    /** Returns the number of commits in the graph. */
+    static int size() {
+        load();
+        return _persisted + _pendingIDs.size();
+    }
+
+    /** Returns the number of commits in the graph file, which occupy the
+     *  first positions; the rest were added since it was written. */
+    static int persisted() {
+        load();
+        return _persisted;
+    }
+
+    /** Returns the position of the commit with full ID, or -1 if there is
+     *  no such commit. */
+    static int position(String id) {
+        load();
+        Integer pos = lookup(id);
+        if (pos == null && !_rebuilt && GitCommitStore.contains(id)) {
+            rebuild();
+            pos = lookup(id);
+        }
+        return pos == null ? -1 : pos;
+    }
+
+    /** Returns the ID of the commit at POS. */
+    static String id(int pos) {
+        load();
+        if (pos >= _persisted) {
+            return _pendingIDs.get(pos - _persisted);
+        }
+        byte[] raw = new byte[GitCodec.HASH_BYTES];
+        ByteBuffer rec = _data.duplicate();
+        rec.position(HEADER + pos * RECORD);
+        rec.get(raw);
+        return GitCodec.bytesToHex(raw);
+    }
+
+    /** Returns the position of the first parent of the commit at POS, or
+     *  -1 if it has none. */
+    static int parent1(int pos) {
+        load();
+        if (pos >= _persisted) {
+            return _pending.get((pos - _persisted) * 3);
+        }
+        return _data.getInt(HEADER + pos * RECORD + GitCodec.HASH_BYTES);
+    }
+
+    /** Returns the position of the second parent of the commit at POS, or
+     *  -1 if it is not a merge. */
+    static int parent2(int pos) {
+        load();
+        if (pos >= _persisted) {
+            return _pending.get((pos - _persisted) * 3 + 1);
+        }
+        return _data.getInt(HEADER + pos * RECORD + GitCodec.HASH_BYTES + 4);
+    }
+
+    /** Returns the generation number of the commit at POS. */
+    static int generation(int pos) {
+        load();
+        if (pos >= _persisted) {
+            return _pending.get((pos - _persisted) * 3 + 2);
+        }
+        return _data.getInt(HEADER + pos * RECORD + GitCodec.HASH_BYTES + 8);
+    }
+
+    /** Returns true if the commit with ID A is an ancestor of (or the same
+     *  as) the commit with ID B. Only commits with generation numbers
+     *  above A's are visited. */
+    static boolean isAncestor(String a, String b) {
+        int pa = position(a);
+        int pb = position(b);
+        if (pa < 0 || pb < 0) {
+            return false;
+        }
+        int gen = generation(pa);
+        BitSet seen = new BitSet();
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        todo.push(pb);
+        while (!todo.isEmpty()) {
+            int pos = todo.pop();
+            if (pos == pa) {
+                return true;
+            }
+            if (seen.get(pos) || generation(pos) <= gen) {
+                continue;
+            }
+            seen.set(pos);
+            for (int p : new int[] {parent1(pos), parent2(pos)}) {
+                if (p >= 0) {
+                    todo.push(p);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the positions of the commit with ID and of all its
+     *  ancestors, through first and second parents. */
+    static BitSet reachable(String id) {
+        BitSet seen = new BitSet();
+        int start = position(id);
+        if (start < 0) {
+            return seen;
+        }
+        ArrayDeque<Integer> todo = new ArrayDeque<>();
+        todo.push(start);
+        while (!todo.isEmpty()) {
+            int pos = todo.pop();
+            if (seen.get(pos)) {
+                continue;
+            }
+            seen.set(pos);
+            for (int p : new int[] {parent1(pos), parent2(pos)}) {
+                if (p >= 0 && !seen.get(p)) {
+                    todo.push(p);
+                }
+            }
+        }
+        return seen;
+    }
+
+    /** Returns the IDs of the commit with ID and all its ancestors, newest
+     *  (highest position) first. */
+    static List<String> ancestors(String id) {
+        BitSet seen = reachable(id);
+        ArrayList<String> result = new ArrayList<>(seen.cardinality());
+        for (int pos = seen.length() - 1; pos >= 0;
+             pos = seen.previousSetBit(pos - 1)) {
+            result.add(id(pos));
+        }
+        return result;
+    }
+
+    /** Adds newly created commit COM, whose parents must already be in
+     *  the graph. It is written out on the next flush. */
+    static void add(GitCommit com) {
+        load();
+        if (lookup(com.getId()) != null) {
+            return;
+        }
+        int p1 = parentPosition(com.getParentID());
+        int p2 = com.isMerged() ? parentPosition(com.getSecParentS()) : -1;
+        if (lookup(com.getId()) != null) {
+            return;
+        }
+        int gen = 1;
+        if (p1 >= 0) {
+            gen = Math.max(gen, generation(p1) + 1);
+        }
+        if (p2 >= 0) {
+            gen = Math.max(gen, generation(p2) + 1);
+        }
+        _positions.put(GitObjectId.fromHex(com.getId()), size());
+        _pendingIDs.add(com.getId());
+        _pending.add(p1);
+        _pending.add(p2);
+        _pending.add(gen);
+    }
+
+    /** Appends the commits added since the last flush to GRAPH_FILE, when
+     *  the changes of this command are committed (see GitJournal). */
+    static void flush() {
+        if (_pendingIDs == null || _pendingIDs.isEmpty()) {
+            return;
+        }
+        long offset = 0;
+        ByteBuffer buf;
+        if (_persisted == 0) {
+            buf = ByteBuffer.allocate(HEADER + _pendingIDs.size() * RECORD);
+            buf.put(MAGIC);
+            buf.put(VERSION);
+        } else {
+            offset = HEADER + (long) _persisted * RECORD;
+            buf = ByteBuffer.allocate(_pendingIDs.size() * RECORD);
+        }
+        for (int i = 0; i < _pendingIDs.size(); i += 1) {
+            buf.put(GitCodec.hexToBytes(_pendingIDs.get(i)));
+            buf.putInt(_pending.get(3 * i));
+            buf.putInt(_pending.get(3 * i + 1));
+            buf.putInt(_pending.get(3 * i + 2));
+        }
+        GitJournal.append(GRAPH_FILE, offset, buf.array());
+        _data = null;
+        _positions = null;
+        _pendingIDs = null;
+        _pending = null;
+    }
+
+    /** Forgets the mapped graph and any commits not yet flushed, so that
+     *  the graph is read afresh when next used. */
+    static void reset() {
+        _data = null;
+        _positions = null;
+        _pendingIDs = null;
+        _pending = null;
+        _rebuilt = false;
+    }
+
+    /** Returns the position of the parent with ID, or -1 if ID is null or
+     *  its record is missing, in which case the history simply ends
+     *  there. */
+    private static int parentPosition(String id) {
+        return id == null ? -1 : position(id);
+    }
+
+    /** Returns the position of the commit with full ID, or null if it is
+     *  not in the graph. */
+    private static Integer lookup(String id) {
+        GitObjectId key = GitObjectId.parse(id);
+        int pos = key == null ? -1 : _positions.get(key);
+        return pos < 0 ? null : pos;
+    }
+
+    /** Maps GRAPH_FILE and indexes its records by ID, unless already
+     *  done. If there is no graph yet, or it cannot be read, but there
+     *  are commits, it is rebuilt from the commit records; the next flush
+     *  then writes it afresh from offset 0. */
+    private static void load() {
+        if (_positions != null) {
+            return;
+        }
+        _pendingIDs = new ArrayList<>();
+        _pending = new ArrayList<>();
+        _persisted = 0;
+        _data = ByteBuffer.allocate(0);
+        boolean valid = false;
+        if (GRAPH_FILE.isFile() && GRAPH_FILE.length() >= HEADER) {
+            try (RandomAccessFile file =
+                     new RandomAccessFile(GRAPH_FILE, "r")) {
+                FileChannel channel = file.getChannel();
+                ByteBuffer data =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                byte[] magic = new byte[MAGIC.length];
+                data.get(magic);
+                if (Arrays.equals(magic, MAGIC)
+                    && data.get() == VERSION) {
+                    _data = data;
+                    _persisted = (int) ((file.length() - HEADER) / RECORD);
+                    valid = true;
+                }
+            } catch (IOException excp) {
+                _persisted = 0;
+            }
+        }
+        _positions = new GitIdMap(_persisted);
+        for (int pos = 0; pos < _persisted; pos += 1) {
+            int rec = HEADER + pos * RECORD;
+            _positions.put(_data.getLong(rec), _data.getLong(rec + 8),
+                           _data.getInt(rec + 16), pos);
+        }
+        if (!valid && !_rebuilt
+            && new File(GitCommitStore.COMMITS_DIR).isDirectory()) {
+            rebuild();
+        }
+    }
+
+    /** Rebuilds the graph from all commit records, for repositories
+     *  written before there was a graph, or whose graph is damaged.
+     *  Commits already in the graph keep their positions. */
+    private static void rebuild() {
+        _rebuilt = true;
+        for (String id : GitCommitStore.ids()) {
+            if (lookup(id) != null) {
+                continue;
+            }
+            ArrayDeque<GitCommit> todo = new ArrayDeque<>();
+            todo.push(GitCommitStore.load(id));
+            while (!todo.isEmpty()) {
+                GitCommit com = todo.peek();
+                if (lookup(com.getId()) != null) {
+                    todo.pop();
+                    continue;
+                }
+                boolean ready = true;
+                for (String pid : new String[] {com.getParentID(),
+                                                com.getSecParentS()}) {
+                    if (pid != null && lookup(pid) == null) {
+                        GitCommit parent = GitCommitStore.load(pid);
+                        if (parent != null) {
+                            todo.push(parent);
+                            ready = false;
+                        }
+                    }
+                }
+                if (ready) {
+                    todo.pop();
+                    add(com);
+                }
+            }
+        }
+    }
+
+    /** Magic number starting the commit-graph file. */
+    private static final byte[] MAGIC = {'G', 'L', 'G'};
+    /** Version of the commit-graph format. */
+    private static final byte VERSION = 1;
+    /** Size of the header. */
+    private static final int HEADER = MAGIC.length + 1;
+    /** Size of one record. */
+    private static final int RECORD = GitCodec.HASH_BYTES + 3 * 4;
+
+    /** The mapped file, or an empty buffer if there is none. */
+    private static ByteBuffer _data;
+    /** Number of records in the mapped file. */
+    private static int _persisted;
+    /** Positions of all commits, by ID, or null if not yet loaded. Keys
+     *  are read from the mapped file as raw words, without building
+     *  Strings. */
+    private static GitIdMap _positions;
+    /** IDs of the commits added since the graph was loaded. */
+    private static ArrayList<String> _pendingIDs;
+    /** First parent, second parent and generation of each added commit. */
+    private static ArrayList<Integer> _pending;
+    /** True once the graph was rebuilt during this command. */
+    private static boolean _rebuilt;
+}
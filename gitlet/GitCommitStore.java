@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Store of Gitlet commits. Each commit is kept as its own record under
+ *  .gitlet/commits/ID, in the binary format of GitCommit.encode (records
+ *  written as serialized Java objects by older versions are still read),
+ *  so a command only reads the commits it actually visits. Commits refer to their parents by ID and are faulted in through
+ *  load, which keeps a bounded cache of recently used commits.
+ *  @author aarini
+ */
+class GitCommitStore {
+
+    /** Directory holding the commit records. */
+    static final String COMMITS_DIR = ".gitlet" + File.separator + "commits";
+
+    /** Returns the record file of the commit with ID. */
+    static File commitFile(String id) {
+        return Utils.join(COMMITS_DIR, id);
+    }
+
+    /** Returns true if a commit with full ID exists. */
+    static boolean contains(String id) {
+        return id != null && (CACHE.containsKey(id) || PENDING.containsKey(id)
+                || commitFile(id).isFile());
+    }
+
+    /** Returns the commit with full ID, or null if there is none. */
+    static GitCommit load(String id) {
+        if (id == null) {
+            return null;
+        }
+        GitCommit com = CACHE.get(id);
+        if (com == null) {
+            com = PENDING.get(id);
+        }
+        if (com == null) {
+            File f = commitFile(id);
+            if (!f.isFile()) {
+                return null;
+            }
+            byte[] bytes = Utils.readContents(f);
+            if (GitCommit.isEncoded(bytes)) {
+                com = GitCommit.decode(bytes);
+            } else {
+                com = Utils.readObject(f, GitCommit.class);
+            }
+            CACHE.put(id, com);
+        }
+        return com;
+    }
+
+    /** Adds the newly created commit COM, and its place in the commit
+     *  graph. Both are written out on the next flush. */
+    static void add(GitCommit com) {
+        PENDING.put(com.getId(), com);
+        GitCommitGraph.add(com);
+    }
+
+    /** Writes out all commits added since the last flush. Commits are
+     *  immutable, so existing records are never rewritten. */
+    static void flush() {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        for (GitCommit com : PENDING.values()) {
+            File f = commitFile(com.getId());
+            if (!f.exists()) {
+                GitJournal.create(f, com.encode());
+            }
+            CACHE.put(com.getId(), com);
+        }
+        PENDING.clear();
+        GitCommitGraph.flush();
+    }
+
+    /** Forgets the commits added since the last flush, and those already
+     *  in the commit graph. Commits read from their records stay cached,
+     *  since a record never changes once written. */
+    static void reset() {
+        PENDING.clear();
+        GitCommitGraph.reset();
+    }
+
+    /** Returns the IDs of all commits ever made, in sorted order. */
+    static List<String> ids() {
+        List<String> ids = Utils.plainFilenamesIn(COMMITS_DIR);
+        HashSet<String> result = new HashSet<>(PENDING.keySet());
+        if (ids != null) {
+            result.addAll(ids);
+        }
+        ArrayList<String> sorted = new ArrayList<>(result);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /** Maximum number of commits kept in the cache. */
+    static final int CACHE_SIZE = 256;
+
+    /** Recently read commits, least recently used first. */
+    private static final Map<String, GitCommit> CACHE =
+        new LinkedHashMap<String, GitCommit>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, GitCommit> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    /** Commits created during this command and not yet written. These
+     *  are never evicted. */
+    private static final Map<String, GitCommit> PENDING = new LinkedHashMap<>();
+}
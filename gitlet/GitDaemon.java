@@ -0,0 +1,255 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** A long-lived process serving the commands run in one repository, so
+ *  that they pay neither JVM startup nor the reading of the commit graph,
+ *  the working-file index and the commit and directory caches again.
+ *  "gitlet daemon" serves the repository in the current directory on the
+ *  Unix domain socket .gitlet/daemon.sock until "gitlet daemon stop";
+ *  while it runs, every other gitlet command started in that directory
+ *  just hands its arguments to it and prints what comes back.
+ *
+ *  A request is the command's arguments, each followed by a NUL byte,
+ *  ended by shutting down the client's side of the connection. The reply
+ *  is the command's output, sent as it is printed, followed by a status
+ *  byte (OK, or FAILED if the command threw an exception). Commands run
+ *  one at a time.
+ *
+ *  Anything kept in memory about the repository is dropped before a
+ *  command if the repository files were changed since the last command
+ *  by some other process, as seen from the size, modification time and
+ *  file key of each file in .gitlet and .gitlet/refs. It is also
+ *  dropped after a command that failed, which may have left changes
+ *  half made. Commits and directories are immutable, so those cached
+ *  stay valid.
+ *  @author aarini
+ */
+class GitDaemon {
+
+    /** The socket the daemon listens on. */
+    static final File SOCKET_FILE = Utils.join(".gitlet", "daemon.sock");
+
+    /** Runs "gitlet daemon" with the arguments ARGS after "daemon": serves
+     *  the repository if there are none, or stops the daemon serving it
+     *  if they are just "stop". */
+    static void main(String... args) {
+        if (args.length == 1 && args[0].equals("stop")) {
+            if (!forward("daemon", "stop")) {
+                System.out.println("No daemon is running.");
+            }
+        } else if (args.length > 0) {
+            System.out.println("Incorrect operands.");
+        } else if (!new File(".gitlet").isDirectory()) {
+            System.out.println("Not in an initialized Gitlet directory.");
+        } else {
+            serve();
+        }
+    }
+
+    /** Hands the command ARGS to the daemon serving the repository in the
+     *  current directory, prints its output and returns true. Returns
+     *  false, having done nothing, if no daemon is running, or if ARGS is
+     *  a batch (see GitBatch), which reads its script in this process. */
+    static boolean forward(String... args) {
+        if (args.length == 0 || Main.isBatch(args)
+            || !SOCKET_FILE.exists()) {
+            return false;
+        }
+        try (SocketChannel channel =
+                 SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(SOCKET_FILE.toPath()));
+            OutputStream out = Channels.newOutputStream(channel);
+            for (String arg : args) {
+                out.write(arg.getBytes(StandardCharsets.UTF_8));
+                out.write(0);
+            }
+            out.flush();
+            channel.shutdownOutput();
+            int status = relay(Channels.newInputStream(channel));
+            if (status != OK) {
+                System.exit(1);
+            }
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Copies the reply read from IN to the standard output as it comes,
+     *  all but its last byte, and returns that byte, the status, or -1 if
+     *  the reply is empty. */
+    private static int relay(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int last = -1;
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            if (n == 0) {
+                continue;
+            }
+            if (last >= 0) {
+                System.out.write(last);
+            }
+            System.out.write(buffer, 0, n - 1);
+            System.out.flush();
+            last = buffer[n - 1] & 0xff;
+        }
+        return last;
+    }
+
+    /** Serves commands until told to stop. */
+    private static void serve() {
+        Path socket = SOCKET_FILE.toPath();
+        if (forward("daemon", "ping")) {
+            System.out.println("A daemon is already running.");
+            return;
+        }
+        SOCKET_FILE.delete();
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(SOCKET_FILE::delete));
+            _stamp = stamp();
+            while (_running) {
+                try (SocketChannel client = server.accept()) {
+                    handle(client);
+                } catch (IOException excp) {
+                    continue;
+                }
+            }
+        } catch (IOException excp) {
+            System.out.println("Cannot listen on " + SOCKET_FILE + ".");
+        } finally {
+            SOCKET_FILE.delete();
+        }
+    }
+
+    /** Reads one request from CLIENT, runs it and sends back the reply. */
+    private static void handle(SocketChannel client) throws IOException {
+        String[] args = request(Channels.newInputStream(client));
+        OutputStream out = new BufferedOutputStream(
+            Channels.newOutputStream(client), BUFFER_SIZE);
+        int status = OK;
+        if (args.length == 2 && args[0].equals("daemon")) {
+            if (args[1].equals("stop")) {
+                _running = false;
+                out.write("Daemon stopped.\n".getBytes(StandardCharsets.UTF_8));
+            }
+        } else if (Main.isBatch(args)) {
+            out.write("Incorrect operands.\n".getBytes(StandardCharsets.UTF_8));
+        } else {
+            status = run(args, out);
+        }
+        out.write(status);
+        out.flush();
+    }
+
+    /** Runs the command ARGS, sending what it prints to OUTPUT as it is
+     *  printed. Returns OK, or FAILED if it threw an exception, which is
+     *  printed. Options such as --jobs apply to this request only. */
+    private static int run(String[] args, OutputStream output) {
+        String stamp = stamp();
+        if (!stamp.equals(_stamp)) {
+            reset();
+        }
+        GitIdIndex.reset();
+        PrintStream stdout = System.out;
+        PrintStream capture = new PrintStream(output, false);
+        int status = OK;
+        System.setOut(capture);
+        try {
+            Main.run(args);
+        } catch (RuntimeException excp) {
+            capture.println(excp);
+            reset();
+            status = FAILED;
+        } finally {
+            capture.flush();
+            System.setOut(stdout);
+            GitWorkTree.resetParallelism();
+        }
+        _stamp = stamp();
+        return status;
+    }
+
+    /** Returns the arguments of the request read from IN. */
+    private static String[] request(InputStream in) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        ArrayList<String> args = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i += 1) {
+            if (bytes[i] == 0) {
+                args.add(new String(bytes, start, i - start,
+                                    StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return args.toArray(new String[0]);
+    }
+
+    /** Forgets everything kept in memory about the repository other than
+     *  immutable commits and directories. */
+    private static void reset() {
+        GitJournal.reset();
+        GitCommitStore.reset();
+        GitBitmapIndex.reset();
+        GitMessageIndex.reset();
+        GitIndex.reset();
+        GitRefs.reset();
+    }
+
+    /** Returns the size, modification time and file key of each file in
+     *  .gitlet and in .gitlet/refs, as one string that changes whenever
+     *  any of the repository's mutable files does. */
+    private static String stamp() {
+        StringBuilder stamp = new StringBuilder();
+        for (File dir : new File[] {new File(".gitlet"), GitRefs.REFS_DIR}) {
+            String[] names = dir.list();
+            if (names == null) {
+                continue;
+            }
+            Arrays.sort(names);
+            for (String name : names) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(
+                        new File(dir, name).toPath(), BasicFileAttributes.class);
+                    stamp.append(name).append(' ').append(attrs.size())
+                        .append(' ').append(attrs.lastModifiedTime())
+                        .append(' ').append(attrs.fileKey()).append('\n');
+                } catch (IOException excp) {
+                    stamp.append(name).append('\n');
+                }
+            }
+        }
+        return stamp.toString();
+    }
+
+    /** Size of the buffers the reply passes through. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Status of a command that completed. */
+    private static final int OK = 0;
+    /** Status of a command that threw an exception. */
+    private static final int FAILED = 1;
+
+    /** Stamp of the repository files after the last command. */
+    private static String _stamp;
+    /** False once told to stop. */
+    private static boolean _running = true;
+}
@@ -0,0 +1,274 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A snapshot of one directory: its files and subdirectories by name,
+ *  each with the SHA-1 ID of a blob or of another GitDirectory, held as
+ *  GitObjectIds so that cached directories stay small. A
+ *  directory is kept in the object store under the SHA-1 ID of its
+ *  encoding, so identical subtrees are stored once and two snapshots of a
+ *  directory are the same exactly when their IDs are. Comparing IDs lets
+ *  commands skip unchanged subtrees without looking inside them.
+ *  @author aarini
+ */
+class GitDirectory {
+
+    /** An empty directory. */
+    GitDirectory() {
+        _files = new TreeMap<>();
+        _dirs = new TreeMap<>();
+    }
+
+    /** Writes the directories holding FILES, a mapping of '/'-separated
+     *  paths to blob IDs, to the object store and returns the ID of the
+     *  top one. A name that is both a file and a directory in FILES is
+     *  kept as the directory. */
+    static String write(Map<String, GitObjectId> files) {
+        return writeTree(files).toString();
+    }
+
+    /** As for write(FILES), but returns the ID as a GitObjectId. */
+    private static GitObjectId writeTree(Map<String, GitObjectId> files) {
+        GitDirectory root = new GitDirectory();
+        TreeMap<String, TreeMap<String, GitObjectId>> nested = new TreeMap<>();
+        for (Map.Entry<String, GitObjectId> e : files.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                root._files.put(path, e.getValue());
+            } else {
+                nested.computeIfAbsent(path.substring(0, slash),
+                                       k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), e.getValue());
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, GitObjectId>> e
+                 : nested.entrySet()) {
+            root._files.remove(e.getKey());
+            root._dirs.put(e.getKey(), writeTree(e.getValue()));
+        }
+        return root.write();
+    }
+
+    /** Writes the directories that result from applying CHANGES, a
+     *  mapping of '/'-separated paths to new blob IDs (null to remove the
+     *  path), to the directory with ID, and returns the ID of the new top
+     *  directory. Only directories along changed paths are read and
+     *  written; every other subdirectory is shared by ID with the
+     *  original. Directories left empty are dropped, except the top one.
+     *  A file added where there was a directory replaces the whole
+     *  directory, and a directory holding added files replaces a file of
+     *  the same name, so no name is ever both. */
+    static String update(String id, Map<String, String> changes) {
+        return update(GitObjectId.parse(id), changes, true).toString();
+    }
+
+    /** As for update(ID, CHANGES), but returns null instead of an empty
+     *  directory unless TOP. */
+    private static GitObjectId update(GitObjectId id,
+                                      Map<String, String> changes,
+                                      boolean top) {
+        if (changes.isEmpty() && id != null) {
+            return id;
+        }
+        GitDirectory orig = read(id);
+        GitDirectory dir = new GitDirectory();
+        dir._files.putAll(orig._files);
+        dir._dirs.putAll(orig._dirs);
+        TreeMap<String, TreeMap<String, String>> nested = new TreeMap<>();
+        for (Map.Entry<String, String> e : changes.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash >= 0) {
+                nested.computeIfAbsent(path.substring(0, slash),
+                                       k -> new TreeMap<>())
+                    .put(path.substring(slash + 1), e.getValue());
+            } else if (e.getValue() == null) {
+                dir._files.remove(path);
+            } else {
+                dir._files.put(path, GitObjectId.fromHex(e.getValue()));
+                dir._dirs.remove(path);
+            }
+        }
+        for (Map.Entry<String, TreeMap<String, String>> e : nested.entrySet()) {
+            GitObjectId sub =
+                update(dir._dirs.get(e.getKey()), e.getValue(), false);
+            if (sub == null) {
+                dir._dirs.remove(e.getKey());
+            } else {
+                dir._files.remove(e.getKey());
+                dir._dirs.put(e.getKey(), sub);
+            }
+        }
+        if (!top && dir._files.isEmpty() && dir._dirs.isEmpty()) {
+            return null;
+        }
+        return dir.write();
+    }
+
+    /** Returns the blob ID of the file at '/'-separated PATH below the
+     *  directory with ID, or null if there is none. */
+    static String lookup(String id, String path) {
+        GitObjectId dir = GitObjectId.parse(id);
+        int start = 0;
+        for (int slash = path.indexOf('/'); slash >= 0 && dir != null;
+             slash = path.indexOf('/', start)) {
+            dir = read(dir)._dirs.get(path.substring(start, slash));
+            start = slash + 1;
+        }
+        GitObjectId file = dir == null ? null
+            : read(dir)._files.get(path.substring(start));
+        return file == null ? null : file.toString();
+    }
+
+    /** Writes this directory to the object store, if not already there,
+     *  and returns its ID. */
+    GitObjectId write() {
+        byte[] bytes = encode();
+        String id = Utils.sha1(bytes);
+        GitObjects.put(id, bytes);
+        return GitObjectId.fromHex(id);
+    }
+
+    /** Returns the directory with ID, read from the object store, or an
+     *  empty directory if ID is null. */
+    static GitDirectory read(GitObjectId id) {
+        if (id == null) {
+            return new GitDirectory();
+        }
+        GitDirectory dir = CACHE.get(id);
+        if (dir == null) {
+            dir = decode(GitObjects.get(id.toString()));
+            CACHE.put(id, dir);
+        }
+        return dir;
+    }
+
+    /** Adds every file below the directory with ID to RESULT, keyed by
+     *  its path, which starts with PREFIX. */
+    static void flatten(String id, String prefix,
+                        Map<String, GitObjectId> result) {
+        flatten(GitObjectId.parse(id), prefix, result);
+    }
+
+    /** As for flatten(ID, PREFIX, RESULT). */
+    private static void flatten(GitObjectId id, String prefix,
+                                Map<String, GitObjectId> result) {
+        if (id == null) {
+            return;
+        }
+        GitDirectory dir = read(id);
+        for (Map.Entry<String, GitObjectId> e : dir._files.entrySet()) {
+            result.put(prefix + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, GitObjectId> e : dir._dirs.entrySet()) {
+            flatten(e.getValue(), prefix + e.getKey() + "/", result);
+        }
+    }
+
+    /** Returns the blob IDs of the files directly in this directory, by
+     *  name. Directories that were read are shared, so this must not be
+     *  modified. */
+    TreeMap<String, GitObjectId> files() {
+        return _files;
+    }
+
+    /** Returns the directory IDs of the subdirectories of this directory,
+     *  by name. This must not be modified. */
+    TreeMap<String, GitObjectId> dirs() {
+        return _dirs;
+    }
+
+    /** Returns this directory's encoding: a magic number and version,
+     *  then its entries sorted by name, each a kind byte, the name and
+     *  a raw 20-byte ID. */
+    private byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            GitCodec.writeVarLong(out, _files.size() + _dirs.size());
+            TreeMap<String, Integer> names = new TreeMap<>();
+            for (String name : _files.keySet()) {
+                names.put(name, FILE);
+            }
+            for (String name : _dirs.keySet()) {
+                names.put(name, DIR);
+            }
+            for (Map.Entry<String, Integer> e : names.entrySet()) {
+                out.writeByte(e.getValue());
+                GitCodec.writeString(out, e.getKey());
+                (e.getValue() == FILE ? _files.get(e.getKey())
+                 : _dirs.get(e.getKey())).write(out);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error encoding directory.");
+        }
+    }
+
+    /** Returns the directory whose encoding is BYTES. */
+    private static GitDirectory decode(byte[] bytes) {
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(bytes));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != VERSION) {
+                throw Utils.error("Not a directory object.");
+            }
+            GitDirectory dir = new GitDirectory();
+            int n = (int) GitCodec.readVarLong(in);
+            for (int i = 0; i < n; i += 1) {
+                int kind = in.readUnsignedByte();
+                String name = GitCodec.readString(in);
+                GitObjectId id = GitObjectId.read(in);
+                if (kind == DIR) {
+                    dir._dirs.put(name, id);
+                } else {
+                    dir._files.put(name, id);
+                }
+            }
+            return dir;
+        } catch (IOException excp) {
+            throw Utils.error("Corrupt directory object.");
+        }
+    }
+
+    /** Magic number starting every directory object. */
+    private static final byte[] MAGIC = {'G', 'L', 'T'};
+    /** Version of the directory format. */
+    private static final int VERSION = 1;
+    /** Kind byte of a file entry. */
+    private static final int FILE = 0;
+    /** Kind byte of a subdirectory entry. */
+    private static final int DIR = 1;
+
+    /** Maximum number of directories kept in the cache. */
+    static final int CACHE_SIZE = 1024;
+
+    /** Recently read directories, by ID, least recently used first. */
+    private static final Map<GitObjectId, GitDirectory> CACHE =
+        new LinkedHashMap<GitObjectId, GitDirectory>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<GitObjectId, GitDirectory> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    /** Blob IDs of files, by name. */
+    private final TreeMap<String, GitObjectId> _files;
+    /** Directory IDs of subdirectories, by name. */
+    private final TreeMap<String, GitObjectId> _dirs;
+}
@@ -0,0 +1,242 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/** Sorted index of commit IDs, kept in .gitlet/commit-ids, for resolving
+ *  abbreviated IDs. The file holds the raw 20-byte IDs of the first
+ *  commits of the commit graph, in sorted order, after a fan-out table
+ *  giving for each possible first byte the number of IDs that start with
+ *  a smaller or equal byte. A prefix is found with one table lookup and a
+ *  binary search within its bucket, in the memory-mapped file. Commits
+ *  added to the graph since the file was written are scanned directly;
+ *  once more than MAX_UNSORTED of them are in the graph file, the index
+ *  is rewritten when the command saves, after its changes are committed,
+ *  so that it never names a commit that was not.
+ *  @author aarini
+ */
+class GitIdIndex {
+
+    /** The index file. */
+    static final File INDEX_FILE = Utils.join(".gitlet", "commit-ids");
+
+    /** Fewest hex digits accepted as an abbreviated ID. */
+    static final int MIN_LENGTH = 4;
+
+    /** Returns the full IDs of the commits whose IDs start with PREFIX, a
+     *  string of at least MIN_LENGTH lower-case hex digits, stopping after
+     *  LIMIT of them. Returns an empty list if PREFIX is not such a
+     *  string. */
+    static List<String> resolve(String prefix, int limit) {
+        ArrayList<String> result = new ArrayList<>();
+        if (prefix.length() < MIN_LENGTH
+            || prefix.length() > 2 * GitCodec.HASH_BYTES
+            || !prefix.matches("[0-9a-f]+")) {
+            return result;
+        }
+        load();
+        int total = GitCommitGraph.size();
+        for (int pos = _count; pos < total && result.size() < limit; pos += 1) {
+            String id = GitCommitGraph.id(pos);
+            if (id.startsWith(prefix)) {
+                result.add(id);
+            }
+        }
+        byte[] key = GitCodec.hexToBytes(prefix.length() % 2 == 0
+                                         ? prefix : prefix + "0");
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : _data.getInt(FANOUT + 4 * (first - 1));
+        int hi = _data.getInt(FANOUT + 4 * first);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < _count && result.size() < limit; i += 1) {
+            String id = id(i);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            if (!result.contains(id)) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the IDs of all commits in the commit graph, in sorted
+     *  order. IDs in the file are read as they are reached; only the
+     *  commits added since it was written are sorted in memory. */
+    static Iterator<String> sorted() {
+        load();
+        ArrayList<String> tail = new ArrayList<>();
+        for (int pos = _count; pos < GitCommitGraph.size(); pos += 1) {
+            tail.add(GitCommitGraph.id(pos));
+        }
+        Collections.sort(tail);
+        return new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return _next < _count || _nextTail < tail.size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (_head == null && _next < _count) {
+                    _head = id(_next);
+                }
+                if (_nextTail < tail.size() && (_head == null
+                        || tail.get(_nextTail).compareTo(_head) < 0)) {
+                    _nextTail += 1;
+                    return tail.get(_nextTail - 1);
+                }
+                String result = _head;
+                _head = null;
+                _next += 1;
+                return result;
+            }
+
+            /** Index of the next ID in the file. */
+            private int _next;
+            /** That ID, once read. */
+            private String _head;
+            /** Index of the next ID in the tail. */
+            private int _nextTail;
+        };
+    }
+
+    /** Compares the ID at index I with KEY over the length of KEY. */
+    private static int compare(int i, byte[] key) {
+        int base = IDS + i * GitCodec.HASH_BYTES;
+        for (int j = 0; j < key.length; j += 1) {
+            int c = (_data.get(base + j) & 0xff) - (key[j] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the ID at index I. */
+    private static String id(int i) {
+        byte[] raw = new byte[GitCodec.HASH_BYTES];
+        ByteBuffer rec = _data.duplicate();
+        rec.position(IDS + i * GitCodec.HASH_BYTES);
+        rec.get(raw);
+        return GitCodec.bytesToHex(raw);
+    }
+
+    /** Forgets the mapped index, so that it is read afresh when next
+     *  used. */
+    static void reset() {
+        _data = null;
+        _count = 0;
+    }
+
+    /** Rewrites INDEX_FILE if it was used during this command and more
+     *  than MAX_UNSORTED commits in the graph file are missing from it.
+     *  Called once the command's changes are committed. */
+    static void flush() {
+        if (_data != null
+            && GitCommitGraph.persisted() - _count > MAX_UNSORTED) {
+            write();
+            reset();
+        }
+    }
+
+    /** Maps INDEX_FILE, unless already done. */
+    private static void load() {
+        if (_data == null) {
+            map();
+        }
+    }
+
+    /** Maps INDEX_FILE, or an empty index if it is missing or
+     *  unreadable. */
+    private static void map() {
+        _count = 0;
+        _data = ByteBuffer.allocate(IDS);
+        if (!INDEX_FILE.isFile()) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(INDEX_FILE, "r")) {
+            ByteBuffer data = file.getChannel()
+                .map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (file.length() < IDS) {
+                return;
+            }
+            byte[] magic = new byte[MAGIC.length];
+            data.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || data.get() != VERSION) {
+                return;
+            }
+            int count = data.getInt(FANOUT + 4 * 255);
+            if (file.length() != IDS + (long) count * GitCodec.HASH_BYTES
+                || count > GitCommitGraph.persisted()) {
+                return;
+            }
+            _data = data;
+            _count = count;
+        } catch (IOException excp) {
+            _count = 0;
+        }
+    }
+
+    /** Writes INDEX_FILE for all commits in the commit graph file. */
+    private static void write() {
+        int n = GitCommitGraph.persisted();
+        byte[][] ids = new byte[n][];
+        for (int pos = 0; pos < n; pos += 1) {
+            ids[pos] = GitCodec.hexToBytes(GitCommitGraph.id(pos));
+        }
+        Arrays.sort(ids, Arrays::compareUnsigned);
+        ByteBuffer buf = ByteBuffer.allocate(IDS + n * GitCodec.HASH_BYTES);
+        buf.put(MAGIC);
+        buf.put(VERSION);
+        int[] fanout = new int[256];
+        for (byte[] id : ids) {
+            fanout[id[0] & 0xff] += 1;
+        }
+        int sum = 0;
+        for (int b = 0; b < 256; b += 1) {
+            sum += fanout[b];
+            buf.putInt(sum);
+        }
+        for (byte[] id : ids) {
+            buf.put(id);
+        }
+        GitJournal.replaceCache(INDEX_FILE, buf.array());
+    }
+
+    /** Magic number starting the index file. */
+    private static final byte[] MAGIC = {'G', 'L', 'X'};
+    /** Version of the index format. */
+    private static final byte VERSION = 1;
+    /** Offset of the fan-out table. */
+    private static final int FANOUT = MAGIC.length + 1;
+    /** Offset of the sorted IDs. */
+    private static final int IDS = FANOUT + 4 * 256;
+    /** Largest number of commits left out of the file before it is
+     *  rewritten. */
+    static final int MAX_UNSORTED = 256;
+
+    /** The mapped file, or null if not yet mapped. */
+    private static ByteBuffer _data;
+    /** Number of IDs in the mapped file. */
+    private static int _count;
+}
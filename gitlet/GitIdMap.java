@@ -0,0 +1,120 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** A map from SHA-1 IDs to non-negative ints, for holding very many of
+ *  them: an open-addressing hash table over parallel arrays of longs and
+ *  ints, so that an entry is 24 bytes of arrays rather than a map entry,
+ *  a key String and a boxed value. Keys are given as GitObjectIds, or
+ *  directly as their three words when read from a mapped file.
+ *  @author aarini
+ */
+class GitIdMap {
+
+    /** An empty map with room for about EXPECTED entries before it
+     *  grows. */
+    GitIdMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < expected) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    /** Returns the number of entries. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the value for ID, or -1 if there is none. */
+    int get(GitObjectId id) {
+        return get(id.word0(), id.word1(), id.word2());
+    }
+
+    /** Returns the value for the ID with words W0, W1 and W2, or -1 if
+     *  there is none. */
+    int get(long w0, long w1, int w2) {
+        for (int i = slot(w0); _values[i] >= 0; i = (i + 1) & _mask) {
+            if (_w0[i] == w0 && _w1[i] == w1 && _w2[i] == w2) {
+                return _values[i];
+            }
+        }
+        return -1;
+    }
+
+    /** Sets the value for ID to non-negative VALUE. */
+    void put(GitObjectId id, int value) {
+        put(id.word0(), id.word1(), id.word2(), value);
+    }
+
+    /** Sets the value for the ID with words W0, W1 and W2 to
+     *  non-negative VALUE. */
+    void put(long w0, long w1, int w2, int value) {
+        if (_size + 1 > _values.length * MAX_LOAD) {
+            grow();
+        }
+        int i = slot(w0);
+        while (_values[i] >= 0) {
+            if (_w0[i] == w0 && _w1[i] == w1 && _w2[i] == w2) {
+                _values[i] = value;
+                return;
+            }
+            i = (i + 1) & _mask;
+        }
+        _w0[i] = w0;
+        _w1[i] = w1;
+        _w2[i] = w2;
+        _values[i] = value;
+        _size += 1;
+    }
+
+    /** Returns the first slot to probe for a key starting with W0. Keys
+     *  are SHA-1 hashes, so their high bits are evenly spread. */
+    private int slot(long w0) {
+        return (int) (w0 >>> 32) & _mask;
+    }
+
+    /** Doubles the capacity, re-inserting every entry. */
+    private void grow() {
+        long[] w0 = _w0;
+        long[] w1 = _w1;
+        int[] w2 = _w2;
+        int[] values = _values;
+        allocate(2 * values.length);
+        for (int i = 0; i < values.length; i += 1) {
+            if (values[i] >= 0) {
+                put(w0[i], w1[i], w2[i], values[i]);
+            }
+        }
+    }
+
+    /** Makes the table empty, with CAPACITY slots. */
+    private void allocate(int capacity) {
+        _w0 = new long[capacity];
+        _w1 = new long[capacity];
+        _w2 = new int[capacity];
+        _values = new int[capacity];
+        Arrays.fill(_values, -1);
+        _mask = capacity - 1;
+        _size = 0;
+    }
+
+    /** Smallest number of slots. */
+    private static final int MIN_CAPACITY = 16;
+    /** Largest fraction of slots in use before the table grows. */
+    private static final double MAX_LOAD = 0.7;
+
+    /** First 8 bytes of the key in each slot. */
+    private long[] _w0;
+    /** Next 8 bytes of the key in each slot. */
+    private long[] _w1;
+    /** Last 4 bytes of the key in each slot. */
+    private int[] _w2;
+    /** Value in each slot, or -1 if the slot is empty. */
+    private int[] _values;
+    /** Number of slots minus one; the number of slots is a power of
+     *  two. */
+    private int _mask;
+    /** Number of entries. */
+    private int _size;
+}
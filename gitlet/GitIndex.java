@@ -0,0 +1,276 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/** Persistent cache of the SHA-1 IDs of working files, kept in
+ *  .gitlet/index. Each entry records the size, modification time and
+ *  inode a file had when it was last hashed, so a file whose stat data
+ *  is unchanged is not read again. As in git, an entry modified no
+ *  earlier than the index itself was written is "racy" (a later change
+ *  within the same timestamp tick would go unnoticed) and is always
+ *  rehashed.
+ *  @author aarini
+ */
+class GitIndex {
+
+    /** The index file. */
+    static final File INDEX_FILE = Utils.join(".gitlet", "index");
+
+    /** Returns the SHA-1 ID of the contents of working FILE, which must
+     *  be a normal file, rehashing it only if its stat data changed. */
+    static String sha1(File file) {
+        String key = key(file);
+        Stat stat = stat(file);
+        Entry e = entries().get(key);
+        if (e != null && !e.racy && e.stat.equals(stat)) {
+            return e.sha;
+        }
+        String sha = Utils.sha1(file);
+        entries().put(key, new Entry(stat, sha, false));
+        _dirty = true;
+        return sha;
+    }
+
+    /** Records that working FILE was just written with the contents of
+     *  the blob SHA, so it need not be hashed again. */
+    static void update(File file, String sha) {
+        entries().put(key(file), new Entry(stat(file), sha, false));
+        _dirty = true;
+    }
+
+    /** Writes the index back if it changed during this command. Entries
+     *  for files that no longer exist are dropped. The entries kept in
+     *  memory become what reading the index back would give, so that
+     *  a process running several commands (see GitDaemon) treats racy
+     *  entries as one running a single command would. */
+    static void flush() {
+        if (!_dirty) {
+            return;
+        }
+        TreeMap<String, Entry> sorted = new TreeMap<>();
+        for (Map.Entry<String, Entry> me : entries().entrySet()) {
+            if (new File(me.getKey()).isFile()) {
+                sorted.put(me.getKey(), me.getValue());
+            }
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            GitCodec.writeVarLong(out, sorted.size());
+            String prev = "";
+            for (Map.Entry<String, Entry> me : sorted.entrySet()) {
+                String key = me.getKey();
+                Entry e = me.getValue();
+                int shared = sharedPrefix(prev, key);
+                GitCodec.writeVarLong(out, shared);
+                GitCodec.writeString(out, key.substring(shared));
+                GitCodec.writeVarLong(out, e.stat.size);
+                GitCodec.writeSignedVarLong(out, e.stat.mtime);
+                GitCodec.writeVarLong(out, e.stat.ino);
+                GitCodec.writeHash(out, e.sha);
+                prev = key;
+            }
+            out.close();
+            GitJournal.replaceCache(INDEX_FILE, bytes.toByteArray());
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing index.");
+        }
+        long stamp = stat(INDEX_FILE).mtime;
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Entry> me : sorted.entrySet()) {
+            Entry e = me.getValue();
+            entries.put(me.getKey(), e.stat.mtime < stamp ? e
+                        : new Entry(e.stat, e.sha, true));
+        }
+        _entries = entries;
+        _dirty = false;
+    }
+
+    /** Forgets the entries read or computed, so that the index is read
+     *  afresh when next used. */
+    static void reset() {
+        _entries = null;
+        _dirty = false;
+    }
+
+    /** Returns the entries, reading them from INDEX_FILE on first use. */
+    private static Map<String, Entry> entries() {
+        if (_entries == null) {
+            synchronized (GitIndex.class) {
+                if (_entries == null) {
+                    Map<String, Entry> entries = new ConcurrentHashMap<>();
+                    if (INDEX_FILE.isFile()) {
+                        read(entries);
+                    }
+                    _entries = entries;
+                }
+            }
+        }
+        return _entries;
+    }
+
+    /** Reads INDEX_FILE into ENTRIES. An unreadable index is ignored,
+     *  since it only caches what can be recomputed. */
+    private static void read(Map<String, Entry> entries) {
+        try {
+            long stamp = stat(INDEX_FILE).mtime;
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(Utils.readContents(INDEX_FILE)));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)
+                || in.readUnsignedByte() != VERSION) {
+                return;
+            }
+            int n = (int) GitCodec.readVarLong(in);
+            String prev = "";
+            for (int i = 0; i < n; i += 1) {
+                int shared = (int) GitCodec.readVarLong(in);
+                String key = prev.substring(0, shared) + GitCodec.readString(in);
+                long size = GitCodec.readVarLong(in);
+                long mtime = GitCodec.readSignedVarLong(in);
+                long ino = GitCodec.readVarLong(in);
+                String sha = GitCodec.readHash(in);
+                entries.put(key, new Entry(new Stat(size, mtime, ino), sha,
+                                            mtime >= stamp));
+                prev = key;
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            entries.clear();
+        }
+    }
+
+    /** Returns the key of FILE: its path relative to the working
+     *  directory, with '/' as separator. */
+    static String key(File file) {
+        Path p = file.toPath();
+        if (p.isAbsolute()) {
+            p = CWD.relativize(p.normalize());
+        } else {
+            p = p.normalize();
+        }
+        return p.toString().replace(File.separatorChar, '/');
+    }
+
+    /** Returns the stat data of FILE. */
+    private static Stat stat(File file) {
+        Path p = file.toPath();
+        try {
+            if (_unix) {
+                try {
+                    Map<String, Object> attrs =
+                        Files.readAttributes(p, "unix:size,lastModifiedTime,ino");
+                    return new Stat((Long) attrs.get("size"),
+                                    nanos((FileTime) attrs.get("lastModifiedTime")),
+                                    (Long) attrs.get("ino"));
+                } catch (UnsupportedOperationException excp) {
+                    _unix = false;
+                }
+            }
+            BasicFileAttributes attrs =
+                Files.readAttributes(p, BasicFileAttributes.class);
+            Object fileKey = attrs.fileKey();
+            return new Stat(attrs.size(), nanos(attrs.lastModifiedTime()),
+                            fileKey == null ? 0 : fileKey.hashCode() & 0xffffffffL);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns TIME in nanoseconds. */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /** Returns the length of the longest common prefix of A and B. */
+    private static int sharedPrefix(String a, String b) {
+        int n = 0;
+        int max = Math.min(a.length(), b.length());
+        while (n < max && a.charAt(n) == b.charAt(n)) {
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Stat data of a file, as far as the index is concerned. */
+    private static class Stat {
+        /** Stat data SIZE, MTIME (in ns) and INO. */
+        Stat(long size, long mtime, long ino) {
+            this.size = size;
+            this.mtime = mtime;
+            this.ino = ino;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Stat)) {
+                return false;
+            }
+            Stat s = (Stat) obj;
+            return size == s.size && mtime == s.mtime && ino == s.ino;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) ^ Long.hashCode(mtime);
+        }
+
+        /** Size in bytes. */
+        private final long size;
+        /** Modification time, in nanoseconds since the epoch. */
+        private final long mtime;
+        /** Inode number, or an equivalent file key. */
+        private final long ino;
+    }
+
+    /** An index entry. */
+    private static class Entry {
+        /** An entry for a file with STAT and contents SHA, RACY if it
+         *  may have changed without its stat data changing. */
+        Entry(Stat stat, String sha, boolean racy) {
+            this.stat = stat;
+            this.sha = sha;
+            this.racy = racy;
+        }
+
+        /** Stat data when last hashed. */
+        private final Stat stat;
+        /** SHA-1 ID of the contents. */
+        private final String sha;
+        /** True if the stat data cannot be trusted. */
+        private final boolean racy;
+    }
+
+    /** Magic number starting the index file. */
+    private static final byte[] MAGIC = {'G', 'L', 'I'};
+    /** Version of the index format. */
+    private static final int VERSION = 1;
+    /** The working directory. */
+    private static final Path CWD = Paths.get("").toAbsolutePath();
+
+    /** Entries by key, or null if not yet read. Lookups may come from
+     *  several threads at once. */
+    private static volatile Map<String, Entry> _entries;
+    /** True if the entries changed since they were read. */
+    private static volatile boolean _dirty;
+    /** False once the file system turns out not to offer unix
+     *  attributes. */
+    private static volatile boolean _unix = true;
+}
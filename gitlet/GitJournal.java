@@ -0,0 +1,481 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/** Crash-safe saving. Nothing under .gitlet is written in place: every
+ *  file is written to a temporary file in .gitlet/tmp and renamed over
+ *  its final name, so no file is ever seen half written, and all changes
+ *  made by one command become visible together, when they are committed
+ *  at the end of GitTree.save.
+ *
+ *  Objects and commit records are immutable and only referred to once
+ *  committed, so they are synced and moved into place first; until then
+ *  they are read from their temporary files (see current). Then the
+ *  changes to mutable records (rewritten files, appends to the commit
+ *  graph and message log, deletions) are written to the journal,
+ *  .gitlet/journal, which is synced and renamed into place: that rename
+ *  is the commit point. The changes are then applied and the journal
+ *  removed. After a crash, the next command finds the journal and
+ *  applies it again (every step can be repeated), or finds none and
+ *  throws away the temporary files of the interrupted save. All files
+ *  are synced at commit time, at once, rather than as each is written,
+ *  and a save that changes just one record needs no journal at all.
+ *  Files that only cache what can be recomputed are replaced atomically
+ *  but not synced (see replaceCache).
+ *  @author aarini
+ */
+class GitJournal {
+
+    /** The journal. */
+    static final File JOURNAL_FILE = Utils.join(".gitlet", "journal");
+    /** Directory holding temporary files. */
+    static final File TMP_DIR = Utils.join(".gitlet", "tmp");
+
+    /** Returns the file holding what FILE will hold once the changes made
+     *  so far are committed, if it is a new immutable record, and FILE
+     *  otherwise. */
+    static File current(File file) {
+        File tmp = CREATED.get(file);
+        return tmp == null ? file : tmp;
+    }
+
+    /** Makes FILE, an immutable record not yet present, hold CONTENTS
+     *  once the changes are committed. */
+    static void create(File file, byte[] contents) {
+        File tmp = tempFile();
+        Utils.writeContents(tmp, contents);
+        CREATED.put(file, tmp);
+    }
+
+    /** Makes FILE, an immutable record not yet present, hold a copy of the
+     *  contents SOURCE has now, once the changes are committed. */
+    static void create(File file, File source) {
+        File tmp = tempFile();
+        Utils.copyContents(source, tmp);
+        CREATED.put(file, tmp);
+    }
+
+    /** Makes FILE hold CONTENTS once the changes are committed. */
+    static void replace(File file, byte[] contents) {
+        File tmp = tempFile();
+        Utils.writeContents(tmp, contents);
+        CHANGES.add(new Change(RENAME, file, tmp, 0, null));
+    }
+
+    /** Makes FILE hold BYTES from OFFSET on, and nothing after them, once
+     *  the changes are committed. */
+    static void append(File file, long offset, byte[] bytes) {
+        CHANGES.add(new Change(APPEND, file, null, offset, bytes));
+    }
+
+    /** Deletes FILE, if it exists (and is empty, if a directory), once the
+     *  changes are committed. */
+    static void delete(File file) {
+        CHANGES.add(new Change(DELETE, file, null, 0, null));
+    }
+
+    /** Replaces FILE, which only caches what can be recomputed, by
+     *  CONTENTS at once. It is renamed into place, so that it is never
+     *  seen half written, but not synced, since a cache lost in a crash
+     *  is simply rebuilt. */
+    static void replaceCache(File file, byte[] contents) {
+        File tmp = tempFile();
+        Utils.writeContents(tmp, contents);
+        move(tmp, file);
+    }
+
+    /** Makes all changes made since the last commit durable and visible
+     *  at once. */
+    static void commit() {
+        if (CREATED.isEmpty() && CHANGES.isEmpty()) {
+            return;
+        }
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (File file : CREATED.keySet()) {
+            File dir = parent(file);
+            if (dirs.add(dir)) {
+                dir.mkdirs();
+            }
+        }
+        forEachSync(CREATED.entrySet(), e -> {
+            sync(e.getValue());
+            move(e.getValue(), e.getKey());
+        });
+        forEachSync(dirs, GitJournal::sync);
+        CREATED.clear();
+        for (Change change : CHANGES) {
+            if (change.type == RENAME) {
+                sync(change.tmp);
+            }
+        }
+        if (CHANGES.size() == 1 && CHANGES.get(0).type != APPEND) {
+            apply(CHANGES);
+        } else if (!CHANGES.isEmpty()) {
+            File tmp = tempFile();
+            Utils.writeContents(tmp, encode(CHANGES));
+            sync(tmp);
+            move(tmp, JOURNAL_FILE);
+            sync(parent(JOURNAL_FILE));
+            apply(CHANGES);
+            JOURNAL_FILE.delete();
+            sync(parent(JOURNAL_FILE));
+        }
+        CHANGES.clear();
+        restart();
+    }
+
+    /** Completes the save interrupted by a crash, if its journal was
+     *  committed, and otherwise throws away its temporary files. Only
+     *  the temporary files of processes that have exited are thrown
+     *  away, since another command may be saving at the same time. */
+    static void recover() {
+        if (JOURNAL_FILE.isFile()) {
+            List<Change> changes = decode(Utils.readContents(JOURNAL_FILE));
+            if (changes != null) {
+                apply(changes);
+            }
+            JOURNAL_FILE.delete();
+            sync(parent(JOURNAL_FILE));
+        }
+        File[] left = TMP_DIR.listFiles();
+        if (left != null) {
+            for (File f : left) {
+                if (!inUse(f)) {
+                    File[] files = f.listFiles();
+                    if (files != null) {
+                        for (File g : files) {
+                            g.delete();
+                        }
+                    }
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    /** Returns true if TMP, a file or directory of files in the temporary
+     *  directory, may still be used by the process that named it: that
+     *  is, if it is one of this process's directories or pending changes,
+     *  or belongs to another process that is still running. */
+    private static boolean inUse(File tmp) {
+        String name = tmp.getName();
+        long pid;
+        try {
+            pid = Long.parseLong(name.substring(0, Math.max(0,
+                                                  name.indexOf('-'))));
+        } catch (NumberFormatException excp) {
+            return false;
+        }
+        if (pid == PID) {
+            if (tmp.isDirectory() || CREATED.containsValue(tmp)) {
+                return true;
+            }
+            for (Change change : CHANGES) {
+                if (tmp.equals(change.tmp)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive)
+            .orElse(false);
+    }
+
+    /** Throws away all changes made since the last commit. */
+    static void reset() {
+        for (File tmp : CREATED.values()) {
+            tmp.delete();
+        }
+        for (Change change : CHANGES) {
+            if (change.tmp != null) {
+                change.tmp.delete();
+            }
+        }
+        CREATED.clear();
+        CHANGES.clear();
+        restart();
+    }
+
+    /** Applies CHANGES, then syncs the files appended to and the
+     *  directories of those renamed or deleted. Any of them may already
+     *  have been applied. */
+    private static void apply(List<Change> changes) {
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (Change change : changes) {
+            switch (change.type) {
+            case RENAME:
+                if (change.tmp.isFile()) {
+                    move(change.tmp, change.file);
+                }
+                dirs.add(parent(change.file));
+                break;
+            case APPEND:
+                write(change.file, change.offset, change.bytes);
+                break;
+            default:
+                try {
+                    Files.deleteIfExists(change.file.toPath());
+                } catch (DirectoryNotEmptyException excp) {
+                    break;
+                } catch (IOException excp) {
+                    throw Utils.error("Cannot delete %s.", change.file);
+                }
+                dirs.add(parent(change.file));
+                break;
+            }
+        }
+        syncAll(dirs);
+    }
+
+    /** Writes BYTES to FILE at OFFSET, cutting FILE off after them, and
+     *  syncs it. */
+    private static void write(File file, long offset, byte[] bytes) {
+        parent(file).mkdirs();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(offset);
+            out.seek(offset);
+            out.write(bytes);
+            out.getFD().sync();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s.", file);
+        }
+    }
+
+    /** Returns CHANGES as kept in the journal: a magic number and version,
+     *  then each change as its type followed by its file, and its
+     *  temporary file (renames) or its offset and bytes (appends), then
+     *  END. */
+    private static byte[] encode(List<Change> changes) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            for (Change change : changes) {
+                out.writeByte(change.type);
+                GitCodec.writeString(out, change.file.getPath());
+                if (change.type == RENAME) {
+                    GitCodec.writeString(out, change.tmp.getPath());
+                } else if (change.type == APPEND) {
+                    GitCodec.writeVarLong(out, change.offset);
+                    GitCodec.writeVarLong(out, change.bytes.length);
+                    out.write(change.bytes);
+                }
+            }
+            out.writeByte(END);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing journal.");
+        }
+    }
+
+    /** Returns the changes in JOURNAL, the contents of a journal, or null
+     *  if it is not a complete journal. */
+    private static List<Change> decode(byte[] journal) {
+        ArrayList<Change> changes = new ArrayList<>();
+        try {
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(journal));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)
+                || in.readUnsignedByte() != VERSION) {
+                return null;
+            }
+            for (int type = in.readUnsignedByte(); type != END;
+                 type = in.readUnsignedByte()) {
+                File file = new File(GitCodec.readString(in));
+                if (type == RENAME) {
+                    File tmp = new File(GitCodec.readString(in));
+                    changes.add(new Change(type, file, tmp, 0, null));
+                } else if (type == APPEND) {
+                    long offset = GitCodec.readVarLong(in);
+                    byte[] bytes = new byte[(int) GitCodec.readVarLong(in)];
+                    in.readFully(bytes);
+                    changes.add(new Change(type, file, null, offset, bytes));
+                } else if (type == DELETE) {
+                    changes.add(new Change(type, file, null, 0, null));
+                } else {
+                    return null;
+                }
+            }
+            return changes;
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the name of a new temporary file, unique to this process:
+     *  its process ID, then a count. Filling one directory with many new
+     *  files is slow, so after the first FANOUT, the files are spread
+     *  over FANOUT directories, named after the process too, as objects
+     *  are. Any file left with such a name by an earlier process is
+     *  garbage. */
+    private static synchronized File tempFile() {
+        if (_next == 0) {
+            TMP_DIR.mkdirs();
+        }
+        _next += 1;
+        if (_next <= FANOUT) {
+            return new File(TMP_DIR, PID + "-" + _next);
+        }
+        File dir = tempDir(_next);
+        if (_next <= 2 * FANOUT) {
+            dir.mkdir();
+        }
+        return new File(dir, Long.toString(_next));
+    }
+
+    /** Returns the directory holding this process's temporary file
+     *  numbered N, if it is not kept directly in TMP_DIR. */
+    private static File tempDir(long n) {
+        return new File(TMP_DIR, PID + "-part" + (n % FANOUT));
+    }
+
+    /** Removes this process's directories of temporary files, once none
+     *  of its temporary files are left, and starts counting them
+     *  afresh. */
+    private static synchronized void restart() {
+        for (long n = FANOUT + 1; n <= Math.min(_next, 2 * FANOUT); n += 1) {
+            tempDir(n).delete();
+        }
+        _next = 0;
+    }
+
+    /** Renames FROM to TO, replacing TO, in one step. */
+    private static void move(File from, File to) {
+        try {
+            parent(to).mkdirs();
+            Files.move(from.toPath(), to.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s.", to);
+        }
+    }
+
+    /** Runs ACTION, which syncs files, on each of ITEMS, several at a
+     *  time and in no particular order. A sync spends its time waiting
+     *  for the disk, which completes many at once faster than one after
+     *  another, so they run on SYNC_THREADS threads whatever the number
+     *  of processors. */
+    private static <T> void forEachSync(Collection<T> items,
+                                        Consumer<? super T> action) {
+        if (items.size() <= 1) {
+            items.forEach(action);
+        } else {
+            syncPool().submit(() -> items.parallelStream().forEach(action))
+                .join();
+        }
+    }
+
+    /** Returns the pool syncs run on, creating it if needed. */
+    private static synchronized ForkJoinPool syncPool() {
+        if (_syncPool == null) {
+            _syncPool = new ForkJoinPool(SYNC_THREADS);
+        }
+        return _syncPool;
+    }
+
+    /** Syncs each of FILES, files or directories, to disk. */
+    private static void syncAll(Iterable<File> files) {
+        for (File f : files) {
+            sync(f);
+        }
+    }
+
+    /** Syncs FILE, a file or directory, to disk. Systems that cannot
+     *  sync directories are left to order those writes themselves. */
+    private static void sync(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw Utils.error("Cannot sync %s.", file);
+            }
+        }
+    }
+
+    /** Returns the directory holding FILE. */
+    private static File parent(File file) {
+        return file.getAbsoluteFile().getParentFile();
+    }
+
+    /** A change to a mutable record. */
+    private static class Change {
+        /** A change of TYPE to FILE: for renames, from TMP, and for
+         *  appends, of BYTES at OFFSET. */
+        Change(int type, File file, File tmp, long offset, byte[] bytes) {
+            this.type = type;
+            this.file = file;
+            this.tmp = tmp;
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+
+        /** RENAME, APPEND or DELETE. */
+        private final int type;
+        /** The record changed. */
+        private final File file;
+        /** The temporary file renamed over it, if a rename. */
+        private final File tmp;
+        /** Where the bytes go, if an append. */
+        private final long offset;
+        /** The bytes appended, if an append. */
+        private final byte[] bytes;
+    }
+
+    /** Magic number starting the journal. */
+    private static final byte[] MAGIC = {'G', 'L', 'J'};
+    /** Version of the journal format. */
+    private static final int VERSION = 1;
+    /** Journal entry ending the changes. */
+    private static final int END = 0;
+    /** Change replacing a file by a temporary file. */
+    private static final int RENAME = 1;
+    /** Change writing bytes at the end of a file. */
+    private static final int APPEND = 2;
+    /** Change deleting a file. */
+    private static final int DELETE = 3;
+
+    /** Number of threads syncing files at once. */
+    private static final int SYNC_THREADS = 16;
+    /** The pool syncs run on, or null if not yet needed. */
+    private static ForkJoinPool _syncPool;
+
+    /** Process ID, naming this process's temporary files. */
+    private static final long PID = ProcessHandle.current().pid();
+    /** Number of temporary files kept directly in TMP_DIR, and of
+     *  directories the rest are spread over. */
+    private static final int FANOUT = 256;
+    /** Number of temporary files named since the last commit. */
+    private static long _next;
+
+    /** Temporary files holding new immutable records, by the file each
+     *  will be moved to. */
+    private static final Map<File, File> CREATED = new LinkedHashMap<>();
+    /** Changes to mutable records, in order. */
+    private static final List<Change> CHANGES = new ArrayList<>();
+}
@@ -0,0 +1,378 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Conversion of repositories written by older versions of Gitlet, which
+ *  kept the whole GitTree serialized in .gitlet/path and a full copy of
+ *  every tracked file under .gitlet/objects/COMMITID/SHA/NAME, into the
+ *  current record-per-object layout.
+ *  @author aarini
+ */
+class GitLegacy {
+
+    /** The file holding a repository in the old format. */
+    static final File PATH_FILE = Utils.join(".gitlet", "path");
+
+    /** Converts the old-format repository in the current directory and
+     *  returns it, or returns null (after saying why) if there is none. */
+    static GitTree migrate() {
+        if (!PATH_FILE.isFile()) {
+            System.out.println("No repository in the old format to migrate.");
+            return null;
+        }
+        Tree old = read();
+        Set<String> ids = old._commitIDs.keySet();
+        HashMap<String, GitCommit> commits = new HashMap<>();
+        for (Commit com : old._commitIDs.values()) {
+            convert(com, commits, ids);
+        }
+        ArrayList<GitBranch> branches = new ArrayList<>();
+        GitBranch current = null;
+        for (Branch b : old._branchNames.values()) {
+            GitBranch branch = new GitBranch(b._name,
+                    convert(b._latestGitCommit, commits, ids));
+            branches.add(branch);
+            if (b._name.equals(old._cBranch._name)) {
+                current = branch;
+            }
+        }
+        Stage stage = old._cBranch._gitStage;
+        if (stage != null) {
+            current.setGitStage(stage(current.getHeadID(), stage.latestStaged,
+                    stage._stgdFiles, null, stage.toRemove));
+        }
+        addAll(commits);
+        moveBlobs(commits.keySet());
+        if (old._idOfMsg != null) {
+            for (Map.Entry<String, ArrayList<String>> e
+                     : new TreeMap<>(old._idOfMsg).entrySet()) {
+                for (String id : e.getValue()) {
+                    GitMessageIndex.add(id, e.getKey());
+                }
+            }
+        }
+        GitTree tree = GitTree.restore(current, branches);
+        tree.save();
+        PATH_FILE.delete();
+        return tree;
+    }
+
+    /** Returns the head commit ID of the branch in FILE, a GitBranch
+     *  record of the versions that kept one per branch, or null if it
+     *  cannot be read. */
+    static String branchHead(File file) {
+        try (ObjectInputStream in =
+                 new LegacyInputStream(new FileInputStream(file),
+                                       BranchRecord.class, Stage.class)) {
+            return ((BranchRecord) in.readObject())._headID;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /** Returns the staging area in FILE, a serialized GitStage of the
+     *  versions that kept the stage that way, or null if it cannot be
+     *  read. */
+    static GitStage stage(File file) {
+        try (ObjectInputStream in =
+                 new LegacyInputStream(new FileInputStream(file),
+                                       BranchRecord.class, StageRecord.class)) {
+            StageRecord old = (StageRecord) in.readObject();
+            return stage(old.latestID, old.latestStaged, old._stgdFiles,
+                         old._stagedSHAs, old.toRemove);
+        } catch (IOException | ClassNotFoundException | ClassCastException
+                 | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Returns a stage based on the commit with LATESTID, in which the
+     *  files in LATEST and then those in STAGED (either may be null) are
+     *  staged with the IDs SHAS (if not null) gives them, and the files
+     *  in REMOVED (if not null) are marked for removal. */
+    private static GitStage stage(String latestID, List<String> latest,
+                                  List<String> staged, Map<String, String> shas,
+                                  List<String> removed) {
+        LinkedHashMap<String, GitObjectId> ids = new LinkedHashMap<>();
+        for (List<String> files : Arrays.asList(latest, staged)) {
+            if (files != null) {
+                for (String file : files) {
+                    ids.put(file, shas == null ? null
+                            : GitObjectId.parse(shas.get(file)));
+                }
+            }
+        }
+        return new GitStage(latestID, ids, removed == null
+                            ? new ArrayList<>() : removed);
+    }
+
+    /** Returns the old-format tree read from PATH_FILE. */
+    private static Tree read() {
+        try (ObjectInputStream in =
+                 new LegacyInputStream(new FileInputStream(PATH_FILE),
+                                       Branch.class, Stage.class)) {
+            return (Tree) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            throw Utils.error("Cannot read old repository: %s", e.getMessage());
+        }
+    }
+
+    /** Returns COM, and recursively its first parents, as GitCommits,
+     *  recording each in CONVERTED by ID. IDS holds the IDs of all old
+     *  commits, against which abbreviated second parents are expanded. */
+    private static GitCommit convert(Commit com,
+                                     Map<String, GitCommit> converted,
+                                     Set<String> ids) {
+        ArrayList<Commit> todo = new ArrayList<>();
+        for (Commit c = com; c != null && !converted.containsKey(c.id);
+             c = c.parent) {
+            todo.add(c);
+        }
+        for (int i = todo.size() - 1; i >= 0; i -= 1) {
+            Commit c = todo.get(i);
+            HashMap<String, String> shas = new HashMap<>();
+            if (c.fileSHAs != null) {
+                shas.putAll(c.fileSHAs);
+            }
+            HashSet<String> tracked = new HashSet<>();
+            if (c.addedFiles != null) {
+                tracked.addAll(c.addedFiles.keySet());
+            }
+            tracked.retainAll(shas.keySet());
+            String parent = c.parent == null ? null : c.parent.id;
+            String secParent = null;
+            if (c.isMerged && c.secParentS != null) {
+                secParent = expand(c.secParentS, ids);
+            }
+            converted.put(c.id, new GitCommit(c.id, c.msg, c.time, parent,
+                    secParent, null, shas, tracked));
+        }
+        return converted.get(com.id);
+    }
+
+    /** Adds COMMITS, by ID, to the commit store, each after its parents,
+     *  since the commit graph places a commit only after its parents. */
+    private static void addAll(Map<String, GitCommit> commits) {
+        HashSet<String> added = new HashSet<>();
+        ArrayDeque<GitCommit> todo = new ArrayDeque<>();
+        for (GitCommit com : commits.values()) {
+            todo.push(com);
+            while (!todo.isEmpty()) {
+                GitCommit c = todo.peek();
+                if (added.contains(c.getId())) {
+                    todo.pop();
+                    continue;
+                }
+                boolean ready = true;
+                for (String pid : new String[] {c.getParentID(),
+                                                c.getSecParentS()}) {
+                    GitCommit p = pid == null ? null : commits.get(pid);
+                    if (p != null && !added.contains(pid)) {
+                        todo.push(p);
+                        ready = false;
+                    }
+                }
+                if (ready) {
+                    todo.pop();
+                    added.add(c.getId());
+                    GitCommitStore.add(c);
+                }
+            }
+        }
+    }
+
+    /** Returns the full ID among IDS that abbreviated ID stands for, or
+     *  null if none does. */
+    private static String expand(String id, Set<String> ids) {
+        for (String full : ids) {
+            if (full.startsWith(id)) {
+                return full;
+            }
+        }
+        return null;
+    }
+
+    /** Moves the per-commit file copies of the commits with IDS into the
+     *  content-addressed object store, then removes the old copies. */
+    private static void moveBlobs(Iterable<String> ids) {
+        for (String id : ids) {
+            File comDir = Utils.join(GitObjects.OBJECTS_DIR, id);
+            File[] shaDirs = comDir.listFiles();
+            if (shaDirs == null) {
+                continue;
+            }
+            for (File shaDir : shaDirs) {
+                File[] copies = shaDir.listFiles();
+                if (copies != null) {
+                    for (File copy : copies) {
+                        if (copy.isFile()) {
+                            GitObjects.put(shaDir.getName(), copy);
+                        }
+                        copy.delete();
+                    }
+                }
+                shaDir.delete();
+            }
+            comDir.delete();
+        }
+    }
+
+    /** An ObjectInputStream that reads the old classes GitTree, GitBranch,
+     *  GitCommit and GitStage as the look-alike classes below, GitBranch
+     *  as BRANCH and GitStage as STAGE. */
+    private static class LegacyInputStream extends ObjectInputStream {
+        /** A stream reading from IN, with GitBranch read as BRANCH and
+         *  GitStage as STAGE. */
+        LegacyInputStream(FileInputStream in, Class<?> branch, Class<?> stage)
+            throws IOException {
+            super(in);
+            _branch = branch;
+            _stage = stage;
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+            throws IOException, ClassNotFoundException {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            switch (desc.getName()) {
+            case "gitlet.GitTree":
+                return ObjectStreamClass.lookup(Tree.class);
+            case "gitlet.GitBranch":
+                return ObjectStreamClass.lookup(_branch);
+            case "gitlet.GitCommit":
+                return ObjectStreamClass.lookup(Commit.class);
+            case "gitlet.GitStage":
+                return ObjectStreamClass.lookup(_stage);
+            default:
+                return desc;
+            }
+        }
+
+        /** Class read in place of GitBranch. */
+        private final Class<?> _branch;
+        /** Class read in place of GitStage. */
+        private final Class<?> _stage;
+    }
+
+    /* The classes below have exactly the fields of the old classes, so
+     * that their serialized form can be read. */
+
+    /** The old GitTree. */
+    private static class Tree implements Serializable {
+        /** First SHA ID ever. */
+        private String firstID;
+        /** Current branch. */
+        private Branch _cBranch;
+        /** Branches by name. */
+        private Map<String, Branch> _branchNames;
+        /** Abbreviated IDs. */
+        private HashMap<String, String> _abbID;
+        /** Commit IDs by message. */
+        private Map<String, ArrayList<String>> _idOfMsg;
+        /** Commits by ID. */
+        private Map<String, Commit> _commitIDs;
+        /** Untracked files. */
+        private ArrayList<String> untracked;
+        /** Unused. */
+        private Map<String, String> remoteDir;
+    }
+
+    /** The old GitBranch. */
+    private static class Branch implements Serializable {
+        /** Abbreviated IDs. */
+        private HashMap<String, String> _abbID;
+        /** Commits by ID. */
+        private Map<String, Commit> _commitIDs;
+        /** Name of the branch. */
+        private String _name;
+        /** Head of the branch. */
+        private Commit _latestGitCommit;
+        /** Staging area. */
+        private Stage _gitStage;
+    }
+
+    /** The GitBranch of the versions that kept one record per branch. */
+    private static class BranchRecord implements Serializable {
+        /** Abbreviated IDs. */
+        private HashMap<String, String> _abbID;
+        /** Name of the branch. */
+        private String _name;
+        /** SHA ID of the head. */
+        private String _headID;
+    }
+
+    /** The old GitCommit. */
+    private static class Commit implements Serializable {
+        /** Commit message. */
+        private String msg;
+        /** Commit time. */
+        private Date time;
+        /** SHA ID. */
+        private String id;
+        /** Directory holding the file copies. */
+        private String comDir;
+        /** Parent commit. */
+        private Commit parent;
+        /** Abbreviated first parent of a merge. */
+        private String parentS;
+        /** Abbreviated second parent of a merge. */
+        private String secParentS;
+        /** Merge line for log. */
+        private String parents;
+        /** Separator. */
+        private String seper;
+        /** True for merges. */
+        private boolean isMerged;
+        /** File SHA IDs by name. */
+        private Map<String, String> fileSHAs;
+        /** Tracked files. */
+        private Map<String, String> addedFiles;
+        /** Untracked files. */
+        private ArrayList<String> comUntracked;
+        /** Stage the commit was made from. */
+        private Stage comStage;
+    }
+
+    /** The old GitStage. */
+    private static class Stage implements Serializable {
+        /** Head commit. */
+        private Commit latestCom;
+        /** Newly staged files. */
+        private ArrayList<String> latestStaged;
+        /** Files to remove. */
+        private ArrayList<String> toRemove;
+        /** Staged files. */
+        private ArrayList<String> _stgdFiles;
+    }
+
+    /** The GitStage of the versions that kept it serialized in its own
+     *  record. */
+    private static class StageRecord implements Serializable {
+        /** SHA ID of the head. */
+        private String latestID;
+        /** Newly staged files. */
+        private ArrayList<String> latestStaged;
+        /** Files to remove. */
+        private ArrayList<String> toRemove;
+        /** Staged files. */
+        private ArrayList<String> _stgdFiles;
+        /** IDs of the staged contents by file. */
+        private HashMap<String, String> _stagedSHAs;
+    }
+}
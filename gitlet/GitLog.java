@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+
+/** Streams the output of log and global-log. Commits are found through
+ *  the commit graph and the sorted ID index, which hold only positions and
+ *  IDs, and each commit record is read only when it is about to be
+ *  printed, so skipped commits are never read at all and memory use does
+ *  not grow with the length of the history. Commits are rendered one
+ *  after another into a single text buffer, which is handed to the
+ *  output's encoder directly, without copying, whenever it fills up and
+ *  at the end, instead of a flush per line.
+ *  @author aarini
+ */
+class GitLog {
+
+    /** Prints HEAD and its first-parent ancestors, newest first, leaving
+     *  out the first SKIP of them and stopping after MAX. */
+    static void log(GitCommit head, int skip, int max) {
+        Writer out = output();
+        int pos = GitCommitGraph.position(head.getId());
+        for (; pos >= 0 && skip > 0; skip -= 1) {
+            pos = GitCommitGraph.parent1(pos);
+        }
+        for (; pos >= 0 && max > 0; max -= 1) {
+            print(out, GitCommitGraph.id(pos));
+            pos = GitCommitGraph.parent1(pos);
+        }
+        flush(out);
+    }
+
+    /** Prints all commits ever made, in order of their IDs, leaving out
+     *  the first SKIP of them and stopping after MAX. */
+    static void globalLog(int skip, int max) {
+        Writer out = output();
+        Iterator<String> ids = GitIdIndex.sorted();
+        for (; ids.hasNext() && skip > 0; skip -= 1) {
+            ids.next();
+        }
+        for (; ids.hasNext() && max > 0; max -= 1) {
+            print(out, ids.next());
+        }
+        flush(out);
+    }
+
+    /** Prints the commit with ID, followed by a blank line, to OUT. */
+    private static void print(Writer out, String id) {
+        GitCommitStore.load(id).appendTo(TEXT);
+        TEXT.append(NEWLINE).append(NEWLINE);
+        if (TEXT.length() >= BUFFER_SIZE) {
+            drain(out);
+        }
+    }
+
+    /** Writes out what is left in the text buffer, and flushes OUT. */
+    private static void flush(Writer out) {
+        drain(out);
+        try {
+            out.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write log.");
+        }
+    }
+
+    /** Hands the text buffer to OUT, which encodes it in place, and
+     *  empties it. */
+    private static void drain(Writer out) {
+        try {
+            out.append(CharBuffer.wrap(TEXT));
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write log.");
+        } finally {
+            TEXT.setLength(0);
+        }
+    }
+
+    /** Returns a writer on standard output. It buffers only the encoded
+     *  bytes; the text is buffered in TEXT. */
+    private static Writer output() {
+        TEXT.setLength(0);
+        return new OutputStreamWriter(System.out);
+    }
+
+    /** Size of the text buffer, in chars, beyond which it is written
+     *  out. */
+    static final int BUFFER_SIZE = 1 << 16;
+    /** Line separator, as used by println. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Text of the commits not yet written out. */
+    private static final StringBuilder TEXT =
+        new StringBuilder(BUFFER_SIZE + 256);
+}
@@ -0,0 +1,101 @@
+package gitlet;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/** Merge-base (split point) computation over the commit graph. Commits
+ *  are visited from both heads at once, over first and second parents
+ *  alike, in decreasing order of generation number, so that every child
+ *  is visited before its parents. The first commits reached from both
+ *  sides are the common ancestors; everything below them is marked stale
+ *  and the walk stops as soon as only stale commits remain, without
+ *  looking at older history. The number of queued entries that are not
+ *  stale is kept as commits are queued, visited and marked stale, so
+ *  checking for that costs nothing. Only GitCommitGraph's integer arrays
+ *  are read; no commit records are.
+ *  @author aarini
+ */
+class GitMergeBase {
+
+    /** Returns the best common ancestor of commits A and B: the one with
+     *  the highest generation number, or null if they have none. */
+    static GitCommit find(GitCommit a, GitCommit b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        int pos = find(GitCommitGraph.position(a.getId()),
+                       GitCommitGraph.position(b.getId()));
+        return pos < 0 ? null : GitCommitStore.load(GitCommitGraph.id(pos));
+    }
+
+    /** Returns the position of the best common ancestor of the commits
+     *  at positions A and B, or -1 if there is none. */
+    static int find(int a, int b) {
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        if (a == b) {
+            return a;
+        }
+        int[] flags = new int[GitCommitGraph.size()];
+        int[] queued = new int[flags.length];
+        PriorityQueue<Integer> queue = new PriorityQueue<>(ORDER);
+        flags[a] = SIDE_A;
+        flags[b] = SIDE_B;
+        queue.add(a);
+        queue.add(b);
+        queued[a] = queued[b] = 1;
+        int active = 2;
+        int best = -1;
+        while (active > 0) {
+            int pos = queue.poll();
+            queued[pos] -= 1;
+            if ((flags[pos] & STALE) == 0) {
+                active -= 1;
+            }
+            int f = flags[pos] & (BOTH | STALE);
+            if ((f & BOTH) == BOTH) {
+                if ((flags[pos] & RESULT) == 0) {
+                    flags[pos] |= RESULT;
+                    if ((f & STALE) == 0 && (best < 0
+                            || ORDER.compare(pos, best) < 0)) {
+                        best = pos;
+                    }
+                }
+                f |= STALE;
+            }
+            for (int p : new int[] {GitCommitGraph.parent1(pos),
+                                    GitCommitGraph.parent2(pos)}) {
+                if (p >= 0 && (flags[p] & f) != f) {
+                    if ((flags[p] & STALE) == 0 && (f & STALE) != 0) {
+                        active -= queued[p];
+                    }
+                    flags[p] |= f;
+                    queue.add(p);
+                    queued[p] += 1;
+                    if ((flags[p] & STALE) == 0) {
+                        active += 1;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Reached from the first commit. */
+    private static final int SIDE_A = 1;
+    /** Reached from the second commit. */
+    private static final int SIDE_B = 2;
+    /** Reached from both commits. */
+    private static final int BOTH = SIDE_A | SIDE_B;
+    /** Below a common ancestor already found. */
+    private static final int STALE = 4;
+    /** Already reported as a common ancestor. */
+    private static final int RESULT = 8;
+
+    /** Visiting order: highest generation first, then latest position
+     *  first. */
+    private static final Comparator<Integer> ORDER =
+        Comparator.comparingInt((Integer pos) -> GitCommitGraph.generation(pos))
+            .thenComparingInt(pos -> pos).reversed();
+}
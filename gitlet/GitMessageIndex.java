@@ -0,0 +1,491 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Index of commit messages, for find. Every commit's ID and message are
+ *  appended to .gitlet/message-log when it is made. .gitlet/message-grams
+ *  indexes the log by trigram: for each three-byte sequence occurring in
+ *  some message, the sorted numbers of the entries whose messages contain
+ *  it, delta-encoded, after a table giving each entry's place in the log.
+ *  A query of three or more bytes reads only the entries whose messages
+ *  hold all of its trigrams; shorter queries, and entries appended since
+ *  the trigram file was written, are scanned. Neither commit records nor
+ *  the commit graph are read. Both files are memory-mapped. The trigram
+ *  file is rewritten by a query once the entries missing from it
+ *  outnumber MAX_UNINDEXED and an eighth of those in it, so commits never
+ *  pay for it, and its cost is spread over many commits.
+ *  @author aarini
+ */
+class GitMessageIndex {
+
+    /** The log of commit IDs and messages. */
+    static final File LOG_FILE = Utils.join(".gitlet", "message-log");
+    /** The trigram index of LOG_FILE. */
+    static final File GRAMS_FILE = Utils.join(".gitlet", "message-grams");
+
+    /** Query mode matching whole messages. */
+    static final int EXACT = 0;
+    /** Query mode matching messages that contain the query. */
+    static final int SUBSTRING = 1;
+    /** Query mode matching messages that contain the query as whole
+     *  words, that is, not next to other letters or digits. */
+    static final int WORD = 2;
+
+    /** Records that the commit with ID has message MSG. It is written out
+     *  on the next flush. */
+    static void add(String id, String msg) {
+        importOld();
+        PENDING_IDS.add(id);
+        PENDING_MESSAGES.add(msg);
+    }
+
+    /** Returns the IDs of the commits whose messages match QUERY in MODE,
+     *  in the order they were made. */
+    static List<String> find(String query, int mode) {
+        importOld();
+        load();
+        ArrayList<String> result = new ArrayList<>();
+        byte[] key = query.getBytes(StandardCharsets.UTF_8);
+        int tail = _indexedLength;
+        if (key.length < GRAM) {
+            tail = HEADER;
+        } else {
+            for (int entry : candidates(key)) {
+                int pos = _grams.getInt(OFFSETS + 4 * entry);
+                if (matches(message(pos), query, mode)) {
+                    result.add(id(pos));
+                }
+            }
+        }
+        for (int pos = tail; pos < _log.limit(); pos = next(pos)) {
+            if (matches(message(pos), query, mode)) {
+                result.add(id(pos));
+            }
+        }
+        for (int i = 0; i < PENDING_IDS.size(); i += 1) {
+            if (matches(PENDING_MESSAGES.get(i), query, mode)) {
+                result.add(PENDING_IDS.get(i));
+            }
+        }
+        return result;
+    }
+
+    /** Appends the entries added since the last flush to LOG_FILE, when
+     *  the changes of this command are committed (see GitJournal). */
+    static void flush() {
+        if (PENDING_IDS.isEmpty()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            long offset = LOG_FILE.length();
+            if (offset < HEADER) {
+                offset = 0;
+                out.write(LOG_MAGIC);
+                out.writeByte(VERSION);
+            }
+            for (int i = 0; i < PENDING_IDS.size(); i += 1) {
+                GitCodec.writeHash(out, PENDING_IDS.get(i));
+                GitCodec.writeString(out, PENDING_MESSAGES.get(i));
+            }
+            out.close();
+            GitJournal.append(LOG_FILE, offset, bytes.toByteArray());
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write message log.");
+        }
+        if (OLD_FILE.isFile()) {
+            GitJournal.delete(OLD_FILE);
+        }
+        PENDING_IDS.clear();
+        PENDING_MESSAGES.clear();
+        _log = null;
+    }
+
+    /** Forgets the mapped files and any entries not yet flushed, so that
+     *  the message log is read afresh when next used. */
+    static void reset() {
+        PENDING_IDS.clear();
+        PENDING_MESSAGES.clear();
+        _log = null;
+        _grams = null;
+        _imported = false;
+    }
+
+    /** Returns true if MSG matches QUERY in MODE. */
+    static boolean matches(String msg, String query, int mode) {
+        if (mode == EXACT) {
+            return msg.equals(query);
+        }
+        for (int i = msg.indexOf(query); i >= 0;
+             i = msg.indexOf(query, i + 1)) {
+            if (mode == SUBSTRING || (boundary(msg, i - 1)
+                    && boundary(msg, i + query.length()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true if index I of S is not a letter or digit. */
+    private static boolean boundary(String s, int i) {
+        return i < 0 || i >= s.length()
+            || !Character.isLetterOrDigit(s.charAt(i));
+    }
+
+    /** Returns the numbers of the indexed entries whose messages contain
+     *  all trigrams of KEY, in increasing order. */
+    private static int[] candidates(byte[] key) {
+        int[] grams = grams(key, key.length);
+        int[][] ranges = new int[grams.length][];
+        for (int i = 0; i < grams.length; i += 1) {
+            ranges[i] = postings(grams[i]);
+            if (ranges[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(ranges, (x, y) -> Integer.compare(x[1] - x[0],
+                                                      y[1] - y[0]));
+        int[] result = null;
+        for (int[] range : ranges) {
+            result = intersect(result, range[0], range[1]);
+        }
+        return result;
+    }
+
+    /** Returns the start and end of the postings of GRAM in _grams, or
+     *  null if no indexed message contains it. */
+    private static int[] postings(int gram) {
+        int lo = 0;
+        int hi = _gramCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int k = _grams.getInt(_table + 8 * mid);
+            if (k < gram) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo == _gramCount || _grams.getInt(_table + 8 * lo) != gram) {
+            return null;
+        }
+        int start = _grams.getInt(_table + 8 * lo + 4);
+        int end = lo + 1 == _gramCount ? _grams.limit()
+            : _grams.getInt(_table + 8 * (lo + 1) + 4);
+        return new int[] {start, end};
+    }
+
+    /** Returns the entry numbers in both SORTED (or all of them, if it is
+     *  null) and the postings between START and END of _grams. */
+    private static int[] intersect(int[] sorted, int start, int end) {
+        ByteBuffer in = _grams.duplicate();
+        in.position(start);
+        in.limit(end);
+        int[] result = new int[sorted == null ? 16 : sorted.length];
+        int n = 0;
+        int i = 0;
+        try {
+            for (int entry = -1; in.hasRemaining(); ) {
+                entry += 1 + (int) GitCodec.readVarLong(in);
+                if (sorted == null) {
+                    if (n == result.length) {
+                        result = Arrays.copyOf(result, 2 * n);
+                    }
+                    result[n++] = entry;
+                    continue;
+                }
+                while (i < sorted.length && sorted[i] < entry) {
+                    i += 1;
+                }
+                if (i == sorted.length) {
+                    break;
+                }
+                if (sorted[i] == entry) {
+                    result[n++] = entry;
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Message index is corrupt.");
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Returns the distinct trigrams of the first LEN bytes of TEXT, in
+     *  increasing order. */
+    private static int[] grams(byte[] text, int len) {
+        if (len < GRAM) {
+            return new int[0];
+        }
+        int[] grams = new int[len - GRAM + 1];
+        for (int i = 0; i < grams.length; i += 1) {
+            grams[i] = (text[i] & 0xff) << 16 | (text[i + 1] & 0xff) << 8
+                | (text[i + 2] & 0xff);
+        }
+        Arrays.sort(grams);
+        int n = 0;
+        for (int i = 0; i < grams.length; i += 1) {
+            if (n == 0 || grams[n - 1] != grams[i]) {
+                grams[n++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, n);
+    }
+
+    /** Returns the commit ID of the log entry at POS. */
+    private static String id(int pos) {
+        byte[] raw = new byte[GitCodec.HASH_BYTES];
+        ByteBuffer in = _log.duplicate();
+        in.position(pos);
+        in.get(raw);
+        return GitCodec.bytesToHex(raw);
+    }
+
+    /** Returns the message of the log entry at POS. */
+    private static String message(int pos) {
+        ByteBuffer in = _log.duplicate();
+        in.position(pos + GitCodec.HASH_BYTES);
+        try {
+            byte[] bytes = new byte[(int) GitCodec.readVarLong(in)];
+            in.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException | RuntimeException excp) {
+            return "";
+        }
+    }
+
+    /** Returns the position of the log entry after the one at POS, or the
+     *  end of the log if that entry is cut short. */
+    private static int next(int pos) {
+        ByteBuffer in = _log.duplicate();
+        if (pos + GitCodec.HASH_BYTES >= in.limit()) {
+            return in.limit();
+        }
+        in.position(pos + GitCodec.HASH_BYTES);
+        try {
+            long len = GitCodec.readVarLong(in);
+            return (int) Math.min(in.limit(), in.position() + len);
+        } catch (IOException excp) {
+            return in.limit();
+        }
+    }
+
+    /** Maps LOG_FILE and GRAMS_FILE, first rewriting the latter if too
+     *  many entries are missing from it. */
+    private static void load() {
+        if (_log != null) {
+            return;
+        }
+        _log = map(LOG_FILE, LOG_MAGIC);
+        mapGrams();
+        int unindexed = 0;
+        for (int pos = _indexedLength; pos < _log.limit(); pos = next(pos)) {
+            unindexed += 1;
+        }
+        if (unindexed > Math.max(MAX_UNINDEXED, _entries / 8)) {
+            write();
+            mapGrams();
+        }
+    }
+
+    /** Maps GRAMS_FILE, or an empty index if it is missing, unreadable or
+     *  does not match the log. */
+    private static void mapGrams() {
+        _grams = map(GRAMS_FILE, GRAMS_MAGIC);
+        _entries = 0;
+        _indexedLength = HEADER;
+        _gramCount = 0;
+        if (_grams.limit() < OFFSETS) {
+            return;
+        }
+        int entries = _grams.getInt(HEADER);
+        int length = _grams.getInt(HEADER + 4);
+        int grams = _grams.getInt(HEADER + 8);
+        int table = OFFSETS + 4 * entries;
+        if (entries < 0 || grams < 0 || length < HEADER
+            || length > _log.limit()
+            || (long) table + 8L * grams > _grams.limit()) {
+            return;
+        }
+        _entries = entries;
+        _indexedLength = length;
+        _gramCount = grams;
+        _table = table;
+    }
+
+    /** Returns FILE memory-mapped, or an empty buffer if it is missing or
+     *  does not start with MAGIC and VERSION. */
+    private static ByteBuffer map(File file, byte[] magic) {
+        ByteBuffer empty = ByteBuffer.allocate(0);
+        if (!file.isFile() || file.length() < HEADER) {
+            return empty;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            ByteBuffer data = in.getChannel()
+                .map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            byte[] start = new byte[magic.length];
+            data.get(start);
+            if (!Arrays.equals(start, magic) || data.get() != VERSION) {
+                return empty;
+            }
+            return data;
+        } catch (IOException excp) {
+            return empty;
+        }
+    }
+
+    /** Writes GRAMS_FILE for the whole of the mapped log. */
+    private static void write() {
+        int[] offsets = new int[16];
+        int entries = 0;
+        HashMap<Integer, Postings> postings = new HashMap<>();
+        ByteBuffer in = _log.duplicate();
+        byte[] text = new byte[256];
+        for (int pos = HEADER; pos < _log.limit(); pos = next(pos)) {
+            if (entries == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * entries);
+            }
+            offsets[entries] = pos;
+            try {
+                in.position(pos + GitCodec.HASH_BYTES);
+                int len = (int) GitCodec.readVarLong(in);
+                if (len > in.remaining()) {
+                    break;
+                }
+                if (len > text.length) {
+                    text = new byte[2 * len];
+                }
+                in.get(text, 0, len);
+                for (int gram : grams(text, len)) {
+                    postings.computeIfAbsent(gram, g -> new Postings())
+                        .add(entries);
+                }
+            } catch (IOException excp) {
+                break;
+            }
+            entries += 1;
+        }
+        TreeMap<Integer, Postings> sorted = new TreeMap<>(postings);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(GRAMS_MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(entries);
+            out.writeInt(entries == 0 ? HEADER : next(offsets[entries - 1]));
+            out.writeInt(sorted.size());
+            for (int i = 0; i < entries; i += 1) {
+                out.writeInt(offsets[i]);
+            }
+            int start = OFFSETS + 4 * entries + 8 * sorted.size();
+            for (Map.Entry<Integer, Postings> e : sorted.entrySet()) {
+                out.writeInt(e.getKey());
+                out.writeInt(start);
+                start += e.getValue()._size;
+            }
+            for (Postings p : sorted.values()) {
+                out.write(p._bytes, 0, p._size);
+            }
+            out.close();
+            GitJournal.replaceCache(GRAMS_FILE, bytes.toByteArray());
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing message index.");
+        }
+    }
+
+    /** Reads the message mapping of earlier versions, if there is one and
+     *  no log yet, into the pending entries. */
+    @SuppressWarnings("unchecked")
+    private static void importOld() {
+        if (_imported) {
+            return;
+        }
+        _imported = true;
+        if (LOG_FILE.isFile() || !OLD_FILE.isFile()) {
+            return;
+        }
+        Map<String, ArrayList<String>> old =
+            new TreeMap<>(Utils.readObject(OLD_FILE, HashMap.class));
+        for (Map.Entry<String, ArrayList<String>> e : old.entrySet()) {
+            for (String id : e.getValue()) {
+                PENDING_IDS.add(id);
+                PENDING_MESSAGES.add(e.getKey());
+            }
+        }
+    }
+
+    /** A growing list of delta-encoded entry numbers. */
+    private static class Postings {
+        /** Appends ENTRY, which must exceed those already added. */
+        void add(int entry) {
+            if (_size + 5 > _bytes.length) {
+                _bytes = Arrays.copyOf(_bytes, 2 * _bytes.length);
+            }
+            int v = entry - _last - 1;
+            while ((v & ~0x7f) != 0) {
+                _bytes[_size++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            _bytes[_size++] = (byte) v;
+            _last = entry;
+        }
+
+        /** The encoded entries. */
+        private byte[] _bytes = new byte[8];
+        /** Number of bytes used in _bytes. */
+        private int _size;
+        /** Last entry added. */
+        private int _last = -1;
+    }
+
+    /** The message mapping written by earlier versions. */
+    private static final File OLD_FILE = Utils.join(".gitlet", "messages");
+    /** Magic number starting the log. */
+    private static final byte[] LOG_MAGIC = {'G', 'L', 'M'};
+    /** Magic number starting the trigram file. */
+    private static final byte[] GRAMS_MAGIC = {'G', 'L', 'N'};
+    /** Version of both formats. */
+    private static final byte VERSION = 1;
+    /** Size of the header of both files. */
+    private static final int HEADER = LOG_MAGIC.length + 1;
+    /** Offset of the entry offsets in the trigram file. */
+    private static final int OFFSETS = HEADER + 12;
+    /** Length of an indexed byte sequence. */
+    private static final int GRAM = 3;
+    /** Fewest unindexed entries that cause the trigram file to be
+     *  rewritten. */
+    static final int MAX_UNINDEXED = 256;
+
+    /** IDs of the commits added since the last flush. */
+    private static final List<String> PENDING_IDS = new ArrayList<>();
+    /** Their messages. */
+    private static final List<String> PENDING_MESSAGES = new ArrayList<>();
+
+    /** The mapped log, or null if not yet mapped. */
+    private static ByteBuffer _log;
+    /** The mapped trigram file. */
+    private static ByteBuffer _grams;
+    /** Number of entries indexed by _grams. */
+    private static int _entries;
+    /** Length of the part of the log they take up. */
+    private static int _indexedLength;
+    /** Number of trigrams in _grams. */
+    private static int _gramCount;
+    /** Offset of the trigram table in _grams. */
+    private static int _table;
+    /** True once the old message mapping was looked for. */
+    private static boolean _imported;
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** The SHA-1 ID of a commit, directory or blob, held as its 20 raw bytes
+ *  in two longs and an int rather than as 40 hex digits in a String: an
+ *  object of 32 bytes instead of about 90, compared and hashed a word at
+ *  a time. IDs still enter and leave the model as hex Strings, through
+ *  fromHex and toString.
+ *  @author aarini
+ */
+final class GitObjectId implements Comparable<GitObjectId> {
+
+    /** The ID whose bytes are W0, then W1, then W2, most significant
+     *  first. */
+    GitObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Returns the ID written as the 40 hex digits HEX. Throws
+     *  IllegalArgumentException if HEX is not such a string. */
+    static GitObjectId fromHex(String hex) {
+        GitObjectId id = parse(hex);
+        if (id == null) {
+            throw new IllegalArgumentException("not a SHA-1 ID: " + hex);
+        }
+        return id;
+    }
+
+    /** Returns the ID written as the 40 hex digits HEX, or null if HEX is
+     *  null or not such a string. */
+    static GitObjectId parse(String hex) {
+        if (hex == null || hex.length() != HEX_LENGTH) {
+            return null;
+        }
+        long w0 = 0;
+        long w1 = 0;
+        int w2 = 0;
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            int d = Character.digit(hex.charAt(i), 16);
+            if (d < 0) {
+                return null;
+            }
+            if (i < 16) {
+                w0 = w0 << 4 | d;
+            } else if (i < 32) {
+                w1 = w1 << 4 | d;
+            } else {
+                w2 = w2 << 4 | d;
+            }
+        }
+        return new GitObjectId(w0, w1, w2);
+    }
+
+    /** Returns the ID whose raw bytes start at OFFSET in BUF. */
+    static GitObjectId read(ByteBuffer buf, int offset) {
+        return new GitObjectId(buf.getLong(offset), buf.getLong(offset + 8),
+                               buf.getInt(offset + 16));
+    }
+
+    /** Returns the next raw ID from IN. */
+    static GitObjectId read(DataInput in) throws IOException {
+        return new GitObjectId(in.readLong(), in.readLong(), in.readInt());
+    }
+
+    /** Writes the raw bytes of this ID to OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(_w0);
+        out.writeLong(_w1);
+        out.writeInt(_w2);
+    }
+
+    /** Returns true if ID is not null and is written as HEX, without
+     *  building either's other form. */
+    static boolean matches(GitObjectId id, String hex) {
+        if (id == null || hex == null || hex.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            if (Character.digit(hex.charAt(i), 16) != id.digit(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the value of hex digit I of this ID. */
+    private int digit(int i) {
+        if (i < 16) {
+            return (int) (_w0 >>> (60 - 4 * i)) & 0xf;
+        } else if (i < 32) {
+            return (int) (_w1 >>> (60 - 4 * (i - 16))) & 0xf;
+        } else {
+            return (_w2 >>> (28 - 4 * (i - 32))) & 0xf;
+        }
+    }
+
+    /** Returns the first 8 bytes of this ID. */
+    long word0() {
+        return _w0;
+    }
+
+    /** Returns the next 8 bytes of this ID. */
+    long word1() {
+        return _w1;
+    }
+
+    /** Returns the last 4 bytes of this ID. */
+    int word2() {
+        return _w2;
+    }
+
+    /** Returns this ID as 40 lower-case hex digits. */
+    @Override
+    public String toString() {
+        char[] hex = new char[HEX_LENGTH];
+        for (int i = 0; i < HEX_LENGTH; i += 1) {
+            hex[i] = DIGITS[digit(i)];
+        }
+        return new String(hex);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof GitObjectId)) {
+            return false;
+        }
+        GitObjectId other = (GitObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    /** IDs are SHA-1 hashes, so any of their bits are already evenly
+     *  spread. */
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    /** IDs are ordered as their hex forms are. */
+    @Override
+    public int compareTo(GitObjectId other) {
+        int c = Long.compareUnsigned(_w0, other._w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2, other._w2);
+        }
+        return c;
+    }
+
+    /** Number of hex digits in an ID. */
+    static final int HEX_LENGTH = 2 * GitCodec.HASH_BYTES;
+    /** Hexadecimal digits, by value. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** First 8 bytes. */
+    private final long _w0;
+    /** Next 8 bytes. */
+    private final long _w1;
+    /** Last 4 bytes. */
+    private final int _w2;
+}
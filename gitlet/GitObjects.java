@@ -0,0 +1,78 @@
+package gitlet;
+
+import java.io.File;
+
+/** Content-addressed object store of Gitlet. Every blob is kept exactly
+ *  once, under .gitlet/objects/XX/YYYY..., where XX is the first two hex
+ *  digits of its SHA-1 ID and YYYY... the remaining 38. New objects are
+ *  moved there when the command saves (see GitJournal), and read from
+ *  their temporary files until then.
+ *  @author aarini
+ */
+class GitObjects {
+
+    /** Directory holding all objects, relative to the working directory. */
+    static final String OBJECTS_DIR = ".gitlet" + File.separator + "objects";
+
+    /** Number of hex digits used for the fan-out subdirectory. */
+    private static final int FAN_OUT = 2;
+
+    /** Returns the file that holds (or would hold) the object with SHA. */
+    static File objectFile(String sha) {
+        return GitJournal.current(storeFile(sha));
+    }
+
+    /** Returns the file in the store that holds (or would hold) the
+     *  object with SHA once saved. */
+    private static File storeFile(String sha) {
+        return Utils.join(OBJECTS_DIR, sha.substring(0, FAN_OUT),
+                sha.substring(FAN_OUT));
+    }
+
+    /** Returns true if the object with SHA is already in the store. */
+    static boolean contains(String sha) {
+        return sha != null && objectFile(sha).isFile();
+    }
+
+    /** Stores CONTENTS under SHA, unless an object with that ID already
+     *  exists, in which case nothing is written. */
+    static void put(String sha, byte[] contents) {
+        if (objectFile(sha).isFile()) {
+            return;
+        }
+        GitJournal.create(storeFile(sha), contents);
+    }
+
+    /** Stores the contents of working FILE under SHA, unless already
+     *  present. The contents are streamed, never held in memory whole. */
+    static void put(String sha, File file) {
+        if (objectFile(sha).isFile()) {
+            return;
+        }
+        GitJournal.create(storeFile(sha), file);
+    }
+
+    /** Returns the contents of the object with SHA. Throws a
+     *  GitletException if there is no such object. */
+    static byte[] get(String sha) {
+        File obj = objectFile(sha);
+        if (!obj.isFile()) {
+            throw Utils.error("Missing object %s.", sha);
+        }
+        return Utils.readContents(obj);
+    }
+
+    /** Writes the contents of the object with SHA to working file DEST,
+     *  creating its directory if needed. Throws a GitletException if there is no such object. */
+    static void copyTo(String sha, File dest) {
+        File obj = objectFile(sha);
+        if (!obj.isFile()) {
+            throw Utils.error("Missing object %s.", sha);
+        }
+        File dir = dest.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory()) {
+            dir.mkdirs();
+        }
+        Utils.copyContents(obj, dest);
+    }
+}
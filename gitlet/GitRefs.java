@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** Branches, kept as refs: one small file per branch under .gitlet/refs,
+ *  named after the branch and holding the ID of its head commit. Reading,
+ *  creating, moving or deleting a branch touches only its own file, so
+ *  no command's cost grows with the number of branches, and nothing else
+ *  about a branch is stored. Changes are held until flush. Branches kept
+ *  by earlier versions as serialized GitBranch records under
+ *  .gitlet/branches are converted the first time refs are used.
+ *  @author aarini
+ */
+class GitRefs {
+
+    /** Directory holding one file per branch. */
+    static final File REFS_DIR = Utils.join(".gitlet", "refs");
+
+    /** Returns the ID of the head commit of the branch NAME, or null if
+     *  there is no such branch. */
+    static String get(String name) {
+        convertOld();
+        if (CHANGED.containsKey(name)) {
+            return CHANGED.get(name);
+        }
+        if (!READ.containsKey(name)) {
+            File f = Utils.join(REFS_DIR, name);
+            READ.put(name, f.isFile() ? Utils.readContentsAsString(f).trim()
+                     : null);
+        }
+        return READ.get(name);
+    }
+
+    /** Points the branch NAME, creating it if needed, at the commit with
+     *  ID. */
+    static void set(String name, String id) {
+        convertOld();
+        if (!id.equals(get(name))) {
+            CHANGED.put(name, id);
+        }
+    }
+
+    /** Deletes the branch NAME, if it exists. */
+    static void delete(String name) {
+        convertOld();
+        CHANGED.put(name, null);
+    }
+
+    /** Returns the names of all branches, in sorted order. */
+    static List<String> names() {
+        convertOld();
+        TreeSet<String> names = new TreeSet<>();
+        List<String> onDisk = Utils.plainFilenamesIn(REFS_DIR);
+        if (onDisk != null) {
+            names.addAll(onDisk);
+        }
+        for (Map.Entry<String, String> e : CHANGED.entrySet()) {
+            if (e.getValue() == null) {
+                names.remove(e.getKey());
+            } else {
+                names.add(e.getKey());
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /** Writes out the branches changed since the last flush, when the
+     *  changes of this command are committed (see GitJournal). */
+    static void flush() {
+        if (CHANGED.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, String> e : CHANGED.entrySet()) {
+            File f = Utils.join(REFS_DIR, e.getKey());
+            if (e.getValue() == null) {
+                GitJournal.delete(f);
+            } else {
+                GitJournal.replace(f, (e.getValue() + "\n")
+                                   .getBytes(StandardCharsets.UTF_8));
+            }
+            READ.put(e.getKey(), e.getValue());
+        }
+        CHANGED.clear();
+        File[] old = OLD_DIR.listFiles();
+        if (old != null) {
+            for (File f : old) {
+                GitJournal.delete(f);
+            }
+            GitJournal.delete(OLD_DIR);
+        }
+    }
+
+    /** Forgets the branches read and any changes not yet flushed, so
+     *  that refs are read afresh when next used. */
+    static void reset() {
+        READ.clear();
+        CHANGED.clear();
+        _converted = false;
+    }
+
+    /** Records a ref for each branch record written by earlier versions,
+     *  unless already done. The old records are removed on the next
+     *  flush. */
+    private static void convertOld() {
+        if (_converted) {
+            return;
+        }
+        _converted = true;
+        List<String> old = Utils.plainFilenamesIn(OLD_DIR);
+        if (old == null) {
+            return;
+        }
+        for (String name : old) {
+            String id = GitLegacy.branchHead(Utils.join(OLD_DIR, name));
+            if (id != null && !Utils.join(REFS_DIR, name).isFile()) {
+                CHANGED.put(name, id);
+            }
+        }
+    }
+
+    /** Directory of the branch records of earlier versions. */
+    private static final File OLD_DIR = Utils.join(".gitlet", "branches");
+
+    /** Head IDs of the branches read from their files, or null for those
+     *  found missing, by name. */
+    private static final Map<String, String> READ = new HashMap<>();
+    /** Head IDs of the branches created or moved since the last flush, or
+     *  null for those deleted, by name. */
+    private static final Map<String, String> CHANGED = new HashMap<>();
+    /** True once the old branch records were looked for. */
+    private static boolean _converted;
+}
@@ -1,171 +1,247 @@
 package gitlet;
 
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.io.Serializable;
 import java.util.Arrays;
-
-/** Class defining the staging area of Gitlet.
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Class defining the staging area of Gitlet: the files staged for
+ * addition, with the IDs of the contents they were staged with, and the
+ * files marked for removal. Both are hashed, so staging or unstaging a
+ * file costs the same however many are staged, and both keep the order
+ * files were staged in, which the ID of the next commit depends on. The
+ * stage is kept in .gitlet/stage in a compact binary form of its own
+ * (see toBytes).
  * @author aarini
  */
-class GitStage implements Serializable {
+class GitStage {
 
-    /** GitStage Constructor using LATEST commit.*/
+    /** GitStage Constructor using LATEST commit. The stage is empty.*/
     public GitStage(GitCommit latest) {
         latestCom = latest;
-        toRemove = new ArrayList<String>();
-        latestStaged = new ArrayList<String>();
-        _stgdFiles = new ArrayList<String>();
-        if (latest.getAddedFiles() != null) {
-            _stgdFiles.addAll(latest.getAddedFiles());
+        latestID = latest.getId();
+        _staged = new LinkedHashMap<>();
+        _removed = new LinkedHashSet<>();
+    }
+
+    /** A stage based on the commit with LATESTID, with the files in
+     * STAGED staged with the contents whose IDs they map to (or null if
+     * not known) and the files in REMOVED marked for removal.*/
+    GitStage(String latestID, Map<String, GitObjectId> staged,
+             Collection<String> removed) {
+        this.latestID = latestID;
+        _staged = new LinkedHashMap<>(staged);
+        _removed = new LinkedHashSet<>(removed);
+    }
+
+    /** Returns the stage recorded in CONTENTS, the bytes of a stage file,
+     * or null if they are not in the format written by toBytes.*/
+    static GitStage read(byte[] contents) {
+        try {
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(contents));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)
+                || in.readUnsignedByte() != VERSION) {
+                return null;
+            }
+            String latest = GitCodec.readHash(in);
+            LinkedHashMap<String, GitObjectId> staged = new LinkedHashMap<>();
+            for (long n = GitCodec.readVarLong(in); n > 0; n -= 1) {
+                String name = GitCodec.readString(in);
+                staged.put(name, in.readBoolean() ? GitObjectId.read(in)
+                           : null);
+            }
+            ArrayList<String> removed = new ArrayList<>();
+            for (long n = GitCodec.readVarLong(in); n > 0; n -= 1) {
+                removed.add(GitCodec.readString(in));
+            }
+            return new GitStage(latest, staged, removed);
+        } catch (IOException excp) {
+            return null;
         }
     }
 
-    /** Returns true if FILE has not been modified since previous commit.*/
-    public boolean unChanged(String file) {
-        String last = null;
-        File f = new File(file);
-        if (f.isFile()) {
-            String curSHA = Utils.sha1(Utils.readContentsAsString(f));
-            if (latestCom.contains(file)) {
-                last = latestCom.getfileSHAs().get(file);
+    /** Returns this stage as kept in the stage file: a magic number and
+     * version, the raw ID of the latest commit, then the number of staged
+     * files followed by each one's name and, if known, raw content ID,
+     * then the number of files to remove followed by their names. Files
+     * appear in the order they were staged.*/
+    byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            GitCodec.writeHash(out, latestID);
+            GitCodec.writeVarLong(out, _staged.size());
+            for (Map.Entry<String, GitObjectId> e : _staged.entrySet()) {
+                GitCodec.writeString(out, e.getKey());
+                out.writeBoolean(e.getValue() != null);
+                if (e.getValue() != null) {
+                    e.getValue().write(out);
+                }
             }
-            if ((curSHA).equals(last)) {
-                return true;
+            GitCodec.writeVarLong(out, _removed.size());
+            for (String file : _removed) {
+                GitCodec.writeString(out, file);
             }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error writing stage.");
         }
-        return false;
+    }
+
+    /** Returns true if FILE has not been modified since previous commit.*/
+    public boolean unChanged(String file) {
+        File f = new File(file);
+        return f.isFile() && GitIndex.sha1(f).equals(getlatestCom().getSHA(file));
     }
 
 
     /** Returns true if the directory has untracked files with ref to a certain commit.*/
     public boolean isUntrackedFiles(GitCommit com) {
-        File fx = new File(com.getCommitDirectory());
-        int dLen = com.getCommitDirectory().length();
-        int abLen = fx.getAbsolutePath().length();
-        String wPath = fx.getAbsolutePath().substring(0, abLen - dLen + 1);
-        File wDir = new File(wPath);
-        File[] fileList = wDir.listFiles();
-        if (fileList == null) {
-            return false;
-        }
-        for (File file0 : fileList) {
-            if (file0.isFile()) {
-                String name = file0.getName();
-
-                if (!latestStaged.contains(name)) {
-                    if (com.contains(name)) {
-                        String str = Utils.sha1(Utils.readContentsAsString(file0));
-                        String sha = com.getfileSHAs().get(name);
-                        if (!sha.equals(str)) {
-                            com.getComUntracked().add(name);
-                            return true;
-                        }
-                    } else {
-                        com.getComUntracked().add(name);
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        List<String> found = GitWorkTree.untrackedFiles(com, _staged.keySet());
+        com.setComUntracked(new ArrayList<>(found));
+        return !found.isEmpty();
     }
 
     /** Checks out FILE.*/
     public void checkout(String file) {
-        _stgdFiles.remove(file);
-        latestStaged.remove(file);
-        toRemove.remove(file);
+        _staged.remove(file);
+        _removed.remove(file);
     }
 
     /** Removes FILE from staging area, marks it to not to be tracked
      * in the next commit if it is in the current commit, removes
      * it from working directory if not already removed by user.*/
     public void remove(String file) {
-        if (!(latestStaged.contains(file) || _stgdFiles.contains(file) || this.latestCom.contains(file))) {
+        boolean tracked = getlatestCom().contains(file);
+        if (!(_staged.containsKey(file) || tracked)) {
             System.out.println(" No reason to remove the file.");
         } else {
-            if (this.latestCom.contains(file)) {
-                toRemove.add(file);
-                latestCom.getAddedFilesMap().remove(file);
-                Utils.restrictedDelete(file);
-            }
-            if (Arrays.asList(latestCom.wDFiles()).contains(file)) {
-                Utils.restrictedDelete(file);
+            if (tracked) {
+                _removed.add(file);
+                GitWorkTree.delete(file);
             }
-            latestStaged.remove(file);
-            _stgdFiles.remove(file);
+            _staged.remove(file);
         }
     }
 
     /** Adds FILE to be staged if it has been modified and exists, and
      * deletes the to be removed mark if it had been marked as such.*/
     public void add(String file) {
-        File f0 = new File(file);
-        if (!(f0).exists()) {
+        File f = new File(file);
+        add(file, f.isFile() ? GitIndex.sha1(f) : null);
+    }
+
+    /** Adds each of FILES as add does, in order, hashing them all first
+     * in one parallel pass.*/
+    public void add(Collection<String> files) {
+        Map<String, String> shas = GitWorkTree.sha1All(files);
+        for (String file : files) {
+            add(file, shas.get(file));
+        }
+    }
+
+    /** Adds FILE, whose current contents have ID SHA, or which does not
+     * exist if SHA is null.*/
+    private void add(String file, String sha) {
+        if (sha == null) {
             System.out.println("File does not exist.");
             return;
         }
-        String sha = Utils.sha1(Utils.readContentsAsString(f0));
-        if (sha.equals(latestCom.getfileSHAs().get(file)) || unChanged(file)) {
-            _stgdFiles.remove(file);
-            latestStaged.remove(file);
+        if (sha.equals(getlatestCom().getSHA(file))) {
+            _staged.remove(file);
         } else {
-            latestStaged.add(file);
-            _stgdFiles.add(file);
+            GitObjects.put(sha, new File(file));
+            _staged.put(file, GitObjectId.fromHex(sha));
         }
-        if (toRemove.contains(file)) {
-            toRemove.remove(file);
-        }
-
+        _removed.remove(file);
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("\n=== Staged Files ===");
-        for (String file : latestStaged) {
+        for (String file : _staged.keySet()) {
             sb.append(file).append("\n");
         }
         sb.append("\n=== Removed Files ===");
-        for (String file : toRemove) {
+        for (String file : _removed) {
             sb.append(file).append("\n");
         }
         return sb.toString();
     }
 
-    /** Reads in bytes from File1 and File2. Returns true if contents are equal. */
-    private boolean fileEquals(File file1, File file2) {
-        if (file1 != null && file2 != null) {
-            byte[] fp1 = Utils.readContents(file1);
-            byte[] fp2 = Utils.readContents(file2);
-            return Arrays.equals(fp1, fp2);
+    /** Returns the newest commit.*/
+    public GitCommit getlatestCom() {
+        if (latestCom == null) {
+            latestCom = GitCommitStore.load(latestID);
         }
-        return false;
+        return latestCom;
+    }
+    /** Returns the staged files, in the order they were staged.*/
+    public Set<String> getStagedFiles() {
+        return Collections.unmodifiableSet(_staged.keySet());
+    }
+    /** Returns the files staged since the last commit, in the order they
+     * were staged. These are the same as the staged files.*/
+    public Set<String> getLatestStaged() { return getStagedFiles(); }
+    /** Returns the files to be removed, in the order they were marked. */
+    public Set<String> getToBeRemoved() {
+        return Collections.unmodifiableSet(_removed);
+    }
+    /** Returns the ID of the contents staged FILE was staged with, or
+     * null if FILE is not staged or was staged by a version that did not
+     * record it.*/
+    public GitObjectId stagedID(String file) {
+        return _staged.get(file);
+    }
+    /** Returns the SHA ID of the contents FILE was staged with. Stages
+     * saved before snapshots were recorded fall back to the current
+     * contents of FILE. Returns null if neither is known.*/
+    public String stagedSHA(String file) {
+        GitObjectId id = _staged.get(file);
+        if (id != null) {
+            return id.toString();
+        }
+        File f = new File(file);
+        return f.isFile() ? GitIndex.sha1(f) : null;
     }
-
-    /** Returns the newest commit.*/
-    public GitCommit getlatestCom() { return latestCom; }
-    /** Returns Arraylist of the already staged files.*/
-    public ArrayList<String> getStagedFiles() { return _stgdFiles; }
-    /** Returns Arraylist of new files just added to stage.*/
-    public ArrayList<String> getLatestStaged() { return latestStaged; }
-    /** Returns list of files to be removed. */
-    public ArrayList<String> getToBeRemoved() { return toRemove; }
     /** Clears the stage.*/
     public void clearStage() {
-        _stgdFiles.clear();
-        latestStaged.clear();
-        toRemove.clear();
+        _staged.clear();
+        _removed.clear();
     }
 
-    /** The latest/newest commit.*/
+    /** Magic number starting the stage file.*/
+    private static final byte[] MAGIC = {'G', 'L', 'S'};
+    /** Version of the stage format.*/
+    private static final int VERSION = 1;
+
+    /** The latest/newest commit, loaded on demand.*/
     private GitCommit latestCom;
-    /** Arraylist of the new files just added to stage. Cleared after each commit*/
-    private ArrayList<String> latestStaged;
-    /** List of files to not be tracked in the next GitCommit.*/
-    private ArrayList<String> toRemove;
-    /** Arraylist of already staged files.*/
-    private ArrayList<String> _stgdFiles;
+    /** SHA ID of the latest/newest commit.*/
+    private String latestID;
+    /** IDs of the contents of the staged files, or null where not
+     * known, by name in the order they were staged. Cleared after each
+     * commit.*/
+    private final LinkedHashMap<String, GitObjectId> _staged;
+    /** Files to not be tracked in the next GitCommit.*/
+    private final LinkedHashSet<String> _removed;
 }
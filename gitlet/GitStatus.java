@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The differences between the working directory, a staging area and the
+ *  commit it is based on, computed in one pass over the working directory.
+ *  Only files that are staged or tracked are hashed, in parallel and
+ *  through the stat cache in GitIndex, so unchanged files are never read.
+ *  @author aarini
+ */
+class GitStatus {
+
+    /** The status of the working directory with respect to STAGE and the
+     *  commit HEAD it is based on. */
+    GitStatus(GitCommit head, GitStage stage) {
+        _modified = new TreeMap<>();
+        _untracked = new TreeSet<>();
+        Set<String> staged = stage.getStagedFiles();
+        Set<String> removed = stage.getToBeRemoved();
+        Map<String, GitObjectId> tracked = head.getfileSHAs();
+        Set<String> seen = new HashSet<>();
+
+        List<String> files = GitWorkTree.files();
+        ArrayList<String> toHash = new ArrayList<>();
+        for (String name : files) {
+            seen.add(name);
+            if (staged.contains(name) ? stage.stagedID(name) != null
+                : head.contains(name) && !removed.contains(name)) {
+                toHash.add(name);
+            }
+        }
+        Map<String, String> current = GitWorkTree.sha1All(toHash);
+        for (String name : files) {
+            String sha = current.get(name);
+            if (staged.contains(name)) {
+                if (sha != null
+                    && !GitObjectId.matches(stage.stagedID(name), sha)) {
+                    _modified.put(name, MODIFIED);
+                }
+            } else if (head.contains(name) && !removed.contains(name)) {
+                if (sha != null
+                    && !GitObjectId.matches(tracked.get(name), sha)) {
+                    _modified.put(name, MODIFIED);
+                }
+            } else {
+                _untracked.add(name);
+            }
+        }
+        for (String name : staged) {
+            if (!seen.contains(name)) {
+                _modified.put(name, DELETED);
+            }
+        }
+        for (String name : head.getAddedFiles()) {
+            if (!seen.contains(name) && !removed.contains(name)
+                && !staged.contains(name)) {
+                _modified.put(name, DELETED);
+            }
+        }
+    }
+
+    /** Returns the files changed in the working directory but not staged,
+     *  each followed by " (modified)" or " (deleted)", in sorted order. */
+    List<String> modifications() {
+        ArrayList<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> e : _modified.entrySet()) {
+            result.add(e.getKey() + " (" + e.getValue() + ")");
+        }
+        return result;
+    }
+
+    /** Returns the files in the working directory that are neither staged
+     *  nor tracked, in sorted order. */
+    List<String> untracked() {
+        return new ArrayList<>(_untracked);
+    }
+
+    /** Kind of a modified file. */
+    private static final String MODIFIED = "modified";
+    /** Kind of a deleted file. */
+    private static final String DELETED = "deleted";
+
+    /** Unstaged modifications, by file name. */
+    private final TreeMap<String, String> _modified;
+    /** Untracked files. */
+    private final TreeSet<String> _untracked;
+}
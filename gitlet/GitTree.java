@@ -1,20 +1,23 @@
 package gitlet;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /** GitTree data structure used for commit tree-structure of Gitlet.
+ * Its state lives in separate records under .gitlet: one per commit
+ * (see GitCommitStore), one ref per branch (see GitRefs), HEAD, the
+ * staging area and the message index. Each is read only when a command first needs it and
+ * written back only if it changed.
  * @author aarini */
 
-public class GitTree implements Serializable {
+public class GitTree {
 
     /**
      * GitTree constructor.
      */
     public GitTree() {
         _branchNames = new HashMap<>();
-        _commitIDs = new HashMap<>();
-        _abbID = new HashMap<>();
-        _idOfMsg = new HashMap<>();
+        _loaded = new HashMap<>();
         untracked = new ArrayList<>();
         this.remoteDir = new HashMap<>();
     }
@@ -25,60 +28,239 @@ public class GitTree implements Serializable {
     public static GitTree init() {
         GitTree initTree = new GitTree();
         GitCommit initCom = new GitCommit(null, "initial commit");
-        ArrayList<String> ids = new ArrayList<>();
-        ids.add(initCom.getId());
-        initTree.firstID = initCom.getId();
         initTree._cBranch = new GitBranch("master", initCom);
         initTree._branchNames.put("master", initTree.currentBranch());
-        initTree._idOfMsg.put("initial commit", ids);
-        initTree._commitIDs.put(initCom.getId(), initCom);
-        initTree._abbID.put(initCom.getId().substring(0, 8), initCom.getId());
+        GitRefs.set("master", initCom.getId());
+        GitCommitStore.add(initCom);
+        GitMessageIndex.add(initCom.getId(), initCom.getMsg());
         initTree.isUntrackedFiles();
         return initTree;
     }
 
     /**
-     * Stages the file FILE (adds a copy of it in its
-     * current state to the staging area).
+     * Returns the Gitlet version-control system in the current directory,
+     * or null if there is none. A save interrupted by a crash is first
+     * completed or undone. Only HEAD and the staging area are read here;
+     * everything else is read on demand.
      */
-    public void add(String file) {
-        if (file != null) {
-            _cBranch.gitStageFile(file);
-        } else {
+    public static GitTree load() {
+        GitJournal.recover();
+        if (!HEAD_FILE.isFile()) {
+            return null;
+        }
+        GitTree tree = new GitTree();
+        String head = tree.readRecord(HEAD_FILE);
+        tree._cBranch = tree.getBranch(head);
+        if (STAGE_FILE.isFile()) {
+            GitStage stage = GitStage.read(tree.readBytes(STAGE_FILE));
+            if (stage == null) {
+                stage = GitLegacy.stage(STAGE_FILE);
+            }
+            if (stage != null) {
+                tree._cBranch.setGitStage(stage);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Returns a tree whose current branch is CURRENT, with branches
+     * BRANCHES, for a repository converted from an older format. Nothing
+     * is written until it is saved.
+     */
+    static GitTree restore(GitBranch current, Collection<GitBranch> branches) {
+        GitTree tree = new GitTree();
+        tree._cBranch = current;
+        for (GitBranch branch : branches) {
+            tree._branchNames.put(branch.getName(), branch);
+        }
+        return tree;
+    }
+
+    /**
+     * Writes back every record that changed during this command, all at
+     * once (see GitJournal). The caches that name commits, the bitmaps
+     * and the ID index, are written only after that, so that they never
+     * name a commit whose records were not saved.
+     */
+    public void save() {
+        GitMessageIndex.flush();
+        GitIndex.flush();
+        GitCommitStore.flush();
+        for (GitBranch branch : _branchNames.values()) {
+            GitRefs.set(branch.getName(), branch.getHeadID());
+        }
+        GitRefs.flush();
+        writeRecord(HEAD_FILE, cbName());
+        writeRecord(STAGE_FILE, cbGitStage().toBytes());
+        GitJournal.commit();
+        GitBitmapIndex.flush();
+        GitIdIndex.flush();
+    }
+
+    /** Returns the contents of record FILE as a String, remembering them
+     * so that save can tell whether the record changed.*/
+    private String readRecord(File file) {
+        return new String(readBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /** Returns the contents of record FILE, remembering them so that
+     * save can tell whether the record changed.*/
+    private byte[] readBytes(File file) {
+        byte[] contents = Utils.readContents(file);
+        _loaded.put(file, contents);
+        return contents;
+    }
+
+    /** Writes CONTENTS, a String or byte array, to record FILE unless
+     * it already holds exactly those bytes.*/
+    private void writeRecord(File file, Object contents) {
+        byte[] bytes = contents instanceof String
+                ? ((String) contents).getBytes(StandardCharsets.UTF_8)
+                : (byte[]) contents;
+        if (!Arrays.equals(bytes, _loaded.get(file))) {
+            GitJournal.replace(file, bytes);
+            _loaded.put(file, bytes);
+        }
+    }
+
+    /** Returns the branch named NAME, reading its head from the ref
+     * store if needed, or null if there is no such branch.*/
+    private GitBranch getBranch(String name) {
+        GitBranch branch = _branchNames.get(name);
+        if (branch == null && isBranchName(name)) {
+            String head = GitRefs.get(name);
+            if (head != null) {
+                branch = new GitBranch(name, head);
+                _branchNames.put(name, branch);
+            }
+        }
+        return branch;
+    }
+
+    /** Returns true if a branch named NAME exists.*/
+    private boolean hasBranch(String name) {
+        return _branchNames.containsKey(name)
+            || isBranchName(name) && GitRefs.get(name) != null;
+    }
+
+    /** Returns true if NAME can name a branch: each branch is one file
+     *  directly under the refs directory, so NAME must be non-empty and
+     *  contain no path separators or parent references.*/
+    private static boolean isBranchName(String name) {
+        return !name.isEmpty() && !name.equals(".") && !name.contains("/")
+            && !name.contains("\\") && !name.contains("..");
+    }
+
+    /** Returns the names of all branches, in sorted order.*/
+    private List<String> branchNames() {
+        return GitRefs.names();
+    }
+
+    /** Returns the full commit ID that ID (possibly abbreviated to at
+     * least four hex digits) stands for. If there is no such commit, or
+     * more than one, says so and returns null.*/
+    private String resolveID(String id) {
+        if (id == null) {
+            return null;
+        }
+        if (id.length() == Utils.UID_LENGTH && GitCommitStore.contains(id)) {
+            return id;
+        }
+        List<String> found = GitIdIndex.resolve(id.toLowerCase(), 2);
+        if (found.size() > 1) {
+            System.out.println("Ambiguous commit id.");
+            return null;
+        } else if (found.isEmpty()) {
+            System.out.println("No commit with that id exists.");
+            return null;
+        }
+        return found.get(0);
+    }
+
+    /**
+     * Stages each of FILES (adds a copy of it in its
+     * current state to the staging area), in order. A directory
+     * (such as ".") or glob pattern among FILES stands for the
+     * working files under or matching it.
+     */
+    public void add(String... files) {
+        if (files.length == 0) {
             throw new ArrayIndexOutOfBoundsException();
         }
+        _cBranch.gitStageFiles(expand(files, "File does not exist.", false));
     }
 
     /**
-     * Unstages FILE if currently staged, and if it is tracked in the current commit
+     * Unstages each of FILES if currently staged, and if it is tracked in the current commit
      * it marks it to not to be included in next commit and removes it from the working
-     * directory (if user has not already removed it).
+     * directory (if user has not already removed it). A directory or glob pattern among
+     * FILES stands for the working, tracked and staged files under or matching it.
      */
-    public void remove(String file) {
-        if (file != null) {
-            _cBranch.remove(file);
-        } else {
+    public void remove(String... files) {
+        if (files.length == 0) {
             throw new ArrayIndexOutOfBoundsException();
         }
+        for (String name : expand(files, " No reason to remove the file.", true)) {
+            _cBranch.remove(name);
+        }
     }
 
     /**
-     * Prints the commitIDs of all GitCommits that have
-     * commit message MSG, one ID per line.
+     * Returns the files named by PATHS, as given on the command line, in
+     * order and without repeats, printing NONE for each path that names
+     * none. Directories and glob patterns stand for the working files
+     * under or matching them and, if TRACKED, also for the files tracked
+     * by the current commit or staged; the working directory is only
+     * scanned if some path needs it.
      */
-    public void find(String msg) {
-        if (msg != null && _idOfMsg.containsKey(msg)) {
-            for (String id : _idOfMsg.get(msg)) {
-                System.out.println(id);
-            }
-        } else {
-            if (msg == null) {
-                throw new ArrayIndexOutOfBoundsException();
+    private List<String> expand(String[] paths, String none, boolean tracked) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        Collection<String> candidates = null;
+        for (String path : paths) {
+            List<String> found;
+            if (GitWorkTree.isPattern(path)) {
+                if (candidates == null) {
+                    candidates = new TreeSet<>(GitWorkTree.files());
+                    if (tracked) {
+                        candidates.addAll(cbCom().getAddedFiles());
+                        candidates.addAll(cbGitStage().getStagedFiles());
+                    }
+                }
+                found = GitWorkTree.matching(path, candidates);
+            } else {
+                String name = GitWorkTree.normalize(path);
+                found = name == null ? new ArrayList<>()
+                        : Collections.singletonList(name);
             }
-            if (!_idOfMsg.containsKey(msg)) {
-                System.out.println("Found no commit with that message.");
+            if (found.isEmpty()) {
+                System.out.println(none);
             }
+            names.addAll(found);
         }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Prints the commitIDs of all GitCommits whose commit message
+     * matches MSG in MODE (one of GitMessageIndex's query modes),
+     * one ID per line, in the order they were made.
+     */
+    public void find(String msg, int mode) {
+        if (msg == null) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        List<String> ids = msg.isEmpty() ? new ArrayList<>()
+                : GitMessageIndex.find(msg, mode);
+        if (ids.isEmpty()) {
+            System.out.println("Found no commit with that message.");
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        for (String id : ids) {
+            out.append(id).append(System.lineSeparator());
+        }
+        System.out.print(out);
     }
 
     /**
@@ -95,14 +277,8 @@ public class GitTree implements Serializable {
         _cBranch.gitCommit(msg);
         GitCommit com = cbCom();
         String cID = com.getId();
-        _commitIDs.put(cID, com);
-        ArrayList<String> msgIDs = _idOfMsg.get(msg);
-        if (msgIDs == null) {
-            msgIDs = new ArrayList<String>();
-        }
-        msgIDs.add(cID);
-        _idOfMsg.put(msg, msgIDs);
-        _abbID.put(cID.substring(0, 8), cID);
+        GitCommitStore.add(com);
+        GitMessageIndex.add(cID, msg);
         cbGitStage().clearStage();
     }
 
@@ -113,11 +289,15 @@ public class GitTree implements Serializable {
         if (branch == null) {
             throw new ArrayIndexOutOfBoundsException();
         }
-        if (_branchNames.containsKey(branch)) {
+        if (!isBranchName(branch)) {
+            System.out.println("Invalid branch name.");
+            return;
+        }
+        if (hasBranch(branch)) {
             System.out.println("A branch with that name already exists.");
             return;
         }
-        _branchNames.put(branch, new GitBranch(branch, cbCom()));
+        GitRefs.set(branch, cbCom().getId());
     }
 
     /**
@@ -127,77 +307,47 @@ public class GitTree implements Serializable {
         if (branch == null) {
             throw new ArrayIndexOutOfBoundsException();
         }
-        if (!_branchNames.containsKey(branch)) {
+        if (!hasBranch(branch)) {
             System.out.println("A branch with that name does not exist.");
+            return;
         }
         if (branch.equals(cbName())) {
             System.out.println("Cannot remove the current branch.");
             return;
         }
         _branchNames.remove(branch);
+        GitRefs.delete(branch);
     }
 
     /**
      * Starting at current head commit, displays each commit backwards
      * along commit tree until initial commit, following
      * first parent commit links and ignoring second parents for merge commits.
+     * The first SKIP commits are left out, and at most MAX are shown.
      */
-    public void log() {
-        GitCommit com = cbCom();
-        while (com != null) {
-            System.out.println(com.toString());
-            System.out.println();
-            com = com.getParent();
-        }
+    public void log(int skip, int max) {
+        GitLog.log(cbCom(), skip, max);
     }
 
     /**
-     * Log function, but for all commits ever made.
+     * Log function, but for all commits ever made, leaving out the
+     * first SKIP and showing at most MAX.
      */
-    public void printGlobalLog() {
-        for (String key : _commitIDs.keySet()) {
-            System.out.println((_commitIDs.get(key)).toString());
-            System.out.println();
-        }
+    public void printGlobalLog(int skip, int max) {
+        GitLog.globalLog(skip, max);
     }
 
     /**
      * Returns true if the directory has untracked files.
      */
     public boolean isUntrackedFiles() {
-        File fx = new File(cbCom().getCommitDirectory());
-        int dLen = cbCom().getCommitDirectory().length();
-        int abLen = fx.getAbsolutePath().length();
-        String wPath = fx.getAbsolutePath().substring(0, abLen - dLen + 1);
-        File wDir = new File(wPath);
-        File[] fileList = wDir.listFiles();
-        if (fileList == null) {
+        GitStage stg = cbGitStage();
+        if (stg == null) {
             return false;
         }
-        for (File file0 : fileList) {
-            if (file0.isFile()) {
-                String name = file0.getName();
-                GitStage stg = cbGitStage();
-
-                if (stg == null) {
-                    return false;
-                }
-                if (!stg.getLatestStaged().contains(name)) {
-                    if (cbCom().contains(name)) {
-                        String str = Utils.sha1(Utils.readContentsAsString(file0));
-                        String sha = cbCom().getfileSHAs().get(name);
-                        if (!sha.equals(str)) {
-                            untracked.add(name);
-                            return true;
-                        }
-                    } else {
-                        untracked.add(name);
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
+        List<String> found = GitWorkTree.untrackedFiles(cbCom(), stg.getLatestStaged());
+        untracked.addAll(found);
+        return !found.isEmpty();
     }
 
     /**
@@ -220,7 +370,7 @@ public class GitTree implements Serializable {
         if (branch == null) {
             throw new ArrayIndexOutOfBoundsException();
         }
-        if (!_branchNames.containsKey(branch)) {
+        if (!hasBranch(branch)) {
             System.out.println("A branch with that name does not exist.");
             return;
         }
@@ -231,7 +381,7 @@ public class GitTree implements Serializable {
         if (isUntracked()) {
             return;
         }
-        merge(_branchNames.get(branch));
+        merge(getBranch(branch));
     }
 
     /**
@@ -241,6 +391,19 @@ public class GitTree implements Serializable {
         boolean conflict = false;
         GitCommit ch = _cBranch.getLatestGitCommit();
         GitCommit gh = b.getLatestGitCommit();
+        if (!(cbGitStage().getLatestStaged()).isEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            return;
+        }
+        if (GitBitmapIndex.isAncestor(gh.getId(), ch.getId())) {
+            System.out.println("Given branch is an ancestor "
+                    + "of the current branch.");
+            return;
+        } else if (GitBitmapIndex.isAncestor(ch.getId(), gh.getId())) {
+            _cBranch.setLatestGitCommit(gh);
+            System.out.println("Current branch fast-forwarded.");
+            return;
+        }
         GitCommit spl = split(_cBranch, b);
         ArrayList<String> allFiles = new ArrayList<>();
         allFiles.addAll(ch.getAddedFiles());
@@ -252,52 +415,39 @@ public class GitTree implements Serializable {
             if (!allFiles.contains(x))
                 allFiles.add(x);
         }
-        if (!(cbGitStage().getLatestStaged()).isEmpty()) {
-            System.out.println("You have uncommitted changes.");
-            return;
-        }
-        if (spl.equals(gh) || spl.getId().equals(gh.getId())) {
-            System.out.println("Given branch is an ancestor "
-                    + "of the current branch.");
-            return;
-        } else if (spl.equals(ch) || spl.getId().equals(ch.getId())) {
-            _cBranch.setLatestGitCommit(gh);
-            System.out.println("Current branch fast-forwarded.");
-            return;
-        } else {
-            for (String file : allFiles) {
-                if (!spl.contains(file) && !gh.contains(file) && ch.contains(file)) {
-
-                } else if (!spl.contains(file) && gh.contains(file) && !ch.contains(file)) {
-                    gh.checkout(file);
-                    cbGitStage().add(file);
-                } else if (spl.contains(file) && !ch.unModified(spl, file) && !gh.contains(file)) {
-                    remove(file);
-                    untracked.add(file);
-                } else if (spl.contains(file) && !ch.contains(file) && gh.unModified(spl, file)) {
-
-                } else if (!gh.unModified(spl, file) && ch.unModified(spl, file)) {
-                    mergeSimple(gh, file);
-                } else if (!ch.unModified(spl, file) && gh.unModified(spl, file)) {
-
-                } else if (!gh.unModified(spl, file) && !ch.unModified(spl, file) && gh.unModified(ch, file)) {
-
-                } else if (!gh.contains(file) && !ch.contains(file)) {
-                    if (Arrays.asList(wDFiles()).contains(file)) {
-                    }
-                } else if ((!gh.unModified(spl, file) && !ch.unModified(spl, file)
-                        && (!gh.unModified(ch, file) || !gh.getFile(file).equals(ch.getFile(file))))
-                        || (!gh.unModified(spl, file) && !ch.contains(file)) || (!ch.unModified(spl, file) && !gh.contains(file))
-                        || (!spl.contains(file) && !gh.unModified(ch, file))) {
-                    mergeDifficult(ch, gh, file);
-                    conflict = true;
+        for (String file : allFiles) {
+            if (!spl.contains(file) && !gh.contains(file) && ch.contains(file)) {
+
+            } else if (!spl.contains(file) && gh.contains(file) && !ch.contains(file)) {
+                gh.checkout(file);
+                cbGitStage().add(file);
+            } else if (spl.contains(file) && ch.contains(file)
+                    && !ch.unModified(spl, file) && !gh.contains(file)) {
+                remove(file);
+                untracked.add(file);
+            } else if (spl.contains(file) && !ch.contains(file) && gh.unModified(spl, file)) {
+
+            } else if (!gh.unModified(spl, file) && ch.unModified(spl, file)) {
+                mergeSimple(gh, file);
+            } else if (!ch.unModified(spl, file) && gh.unModified(spl, file)) {
+
+            } else if (!gh.unModified(spl, file) && !ch.unModified(spl, file) && gh.unModified(ch, file)) {
+
+            } else if (!gh.contains(file) && !ch.contains(file)) {
+                if (Arrays.asList(wDFiles()).contains(file)) {
                 }
-                new GitCommit(cbGitStage(), "Merged " + b.getName() + " into " + _cBranch.getName() + ".",
-                        ch.getId().substring(0, 7), gh.getId().substring(0, 7));
-            }
-            if (conflict) {
-                System.out.println("Encountered a merge conflict.");
+            } else if ((!gh.unModified(spl, file) && !ch.unModified(spl, file)
+                    && (!gh.unModified(ch, file) || !gh.getFile(file).equals(ch.getFile(file))))
+                    || (!gh.unModified(spl, file) && !ch.contains(file)) || (!ch.unModified(spl, file) && !gh.contains(file))
+                    || (!spl.contains(file) && !gh.unModified(ch, file))) {
+                mergeDifficult(ch, gh, file);
+                conflict = true;
             }
+            new GitCommit(cbGitStage(), "Merged " + b.getName() + " into " + _cBranch.getName() + ".",
+                    ch.getId(), gh.getId());
+        }
+        if (conflict) {
+            System.out.println("Encountered a merge conflict.");
         }
     }
 
@@ -307,78 +457,56 @@ public class GitTree implements Serializable {
      * to conflicts in GHEAD and CHEAD.
      */
     public void mergeDifficult(GitCommit cHead, GitCommit gHead, String file) {
-        String cStr = "";
-        String gStr = "";
-        Boolean hair = true;
+        byte[] cStr = new byte[0];
+        byte[] gStr = new byte[0];
         if (cHead.contains(file)) {
-            cStr = Utils.readContentsAsString(cHead.getFile(file));
+            cStr = Utils.readContents(cHead.getFile(file));
         }
         if (gHead.contains(file)) {
-            gStr = Utils.readContentsAsString(gHead.getFile(file));
+            gStr = Utils.readContents(gHead.getFile(file));
+        }
+        File dest = new File(file);
+        if (dest.getParentFile() != null) {
+            dest.getParentFile().mkdirs();
         }
-        Utils.writeContents(new File(file), "<<<<<<< HEAD\n",
+        Utils.writeContents(dest, "<<<<<<< HEAD\n",
                 cStr, "=======\n", gStr, ">>>>>>>\n");
     }
 
     /**
      * Since split, if FILE unchanged in current head but
-     * changed in GHEAD, merge it into current head.
+     * changed in GHEAD, merge it into current head. A FILE that GHEAD
+     * no longer tracks is removed.
      */
     public void mergeSimple(GitCommit gHead, String file) {
         File file0 = new File(file);
-        if (file0.exists()) {
-            File file1 = new File(gHead.getCommitDirectory()
-                    + gHead.getfileSHAs().get(file) + gHead.getSep() + file);
-            Utils.writeContents(file0, Utils.readContentsAsString(file1));
+        String sha = gHead.getSHA(file);
+        if (sha == null) {
+            remove(file);
+        } else if (file0.exists()) {
+            GitObjects.copyTo(sha, file0);
+            GitIndex.update(file0, sha);
         }
     }
 
 
     /**
-     * Returns the ID of the split point of branch1 and branch2. Takes a
-     * parameter to differentiate for the pull case, where the split point may
-     * be non-existent, as compared to a local case, where the split point must
-     * be initial commit if nothing else. Redundant now, but there for reference
-     * purposes.
+     * Returns the split point of branch1 and branch2: their latest common
+     * ancestor through first and second parents, or the initial commit if
+     * there is none.
      */
     private GitCommit split(GitBranch branch1, GitBranch branch2) {
-        ArrayList<GitCommit> ancestors1 = new ArrayList<>();
-        ArrayList<GitCommit> ancestors2 = new ArrayList<>();
-        GitCommit c1 = branch1.getLatestGitCommit();
-        GitCommit c2 = branch2.getLatestGitCommit();
-        if (c1 == null && c2 == null) {
-            return _commitIDs.get(firstID);
-        }
-        int i = 0;
-        int j = 0;
-        for (GitCommit com = c1; ; com = com.getParent()) {
-            if (com == null) {
-                break;
-            } else {
-                ancestors1.add(com);
-                i++;
-            }
-        }
-        for (GitCommit com = c2; ; com = com.getParent()) {
-            if (com == null) {
-                break;
-            } else {
-                ancestors2.add(com);
-                j++;
-            }
-        }
-        ancestors1.retainAll(ancestors2);
-        if (!ancestors1.isEmpty()) {
-            return ancestors1.get(0);
-        }
-        return _commitIDs.get(firstID);
+        GitCommit base = GitMergeBase.find(branch1.getLatestGitCommit(),
+                branch2.getLatestGitCommit());
+        return base == null ? getFirstCommit() : base;
     }
 
     /**
      * Checks out FILE.
      */
     public void checkoutFile(String file) {
-        if (!cbCom().contains(file)) {
+        file = GitWorkTree.normalize(file);
+        if (file == null || !cbCom().contains(file)) {
             System.out.println("File does not exist in that commit.");
             return;
         }
@@ -390,18 +518,17 @@ public class GitTree implements Serializable {
      * Checks out FILE from the commit with SHA-1 ID.
      */
     public void checkoutComID(String id, String file) {
-        if (id == null || (!_commitIDs.containsKey(id) && !_abbID.containsKey(id))) {
-            System.out.println("No commit with that id exists.");
+        id = resolveID(id);
+        if (id == null) {
             return;
         }
-        if (id.length() == 8) {
-            id = _abbID.get(id);
-        }
-        if (!_commitIDs.get(id).contains(file)) {
+        GitCommit com = GitCommitStore.load(id);
+        file = GitWorkTree.normalize(file);
+        if (file == null || !com.contains(file)) {
             System.out.println("File does not exist in that commit.");
             return;
         }
-        (_commitIDs.get(id)).checkout(file);
+        com.checkout(file);
         cbGitStage().checkout(file);
     }
 
@@ -410,7 +537,7 @@ public class GitTree implements Serializable {
      * if it is the current branch, or if there are untracked files.
      */
     public void checkoutBranch(String branch) {
-        if (!_branchNames.containsKey(branch)) {
+        if (!hasBranch(branch)) {
             System.out.println("No such branch exists.");
             return;
         }
@@ -421,24 +548,12 @@ public class GitTree implements Serializable {
         if (isUntracked()) {
             return;
         }
-        for (String f0 : cbCom().getAddedFiles()) {
-            String sha = cbCom().getfileSHAs().get(f0);
-            File f = new File(f0);
-            if (f.isFile()) {
-                String fileStr = Utils.sha1(Utils.readContentsAsString(f));
-                if (!_branchNames.get(branch).getLatestGitCommit().getAddedFiles().contains(f0)) {
-                    Utils.restrictedDelete(f0);
-                }
-                if (sha.equals(fileStr)) {
-                    Utils.restrictedDelete(f0);
-                }
-            }
-        }
-        _branchNames.get(branch).getLatestGitCommit().checkout();
+        getBranch(branch).getLatestGitCommit().checkout(cbCom(),
+                cbGitStage().getLatestStaged());
         if (!cbName().equals(branch)) {
             cbGitStage().clearStage();
         }
-        _cBranch = _branchNames.get(branch);
+        _cBranch = getBranch(branch);
     }
 
     /**
@@ -450,31 +565,27 @@ public class GitTree implements Serializable {
         if (id == null) {
             throw new ArrayIndexOutOfBoundsException();
         }
-        if (!_commitIDs.containsKey(id) && !_abbID.containsKey(id)) {
-            System.out.println("No commit with that id exists.");
+        id = resolveID(id);
+        if (id == null) {
             return;
         }
-        if (id.length() == 8) {
-            id = _abbID.get(id);
-        }
-        GitCommit com = _commitIDs.get(id);
+        GitCommit com = GitCommitStore.load(id);
         if (isUntracked()) {
             return;
         }
-        com.checkout();
+        com.checkout(cbCom(), cbGitStage().getLatestStaged());
         _cBranch.getGitStage().clearStage();
         _cBranch.setLatestGitCommit(com);
     }
 
     /**
-     * Prints all existing branches, marks current branch with a *, and
-     * displays Staged files and files marked for untracking.
+     * Prints all existing branches, marks current branch with a *,
+     * displays Staged files and files marked for untracking, and the
+     * unstaged modifications and untracked files in the working directory.
      */
     public void status() {
         System.out.println("=== Branches ===");
-        Object[] sortedB = _branchNames.keySet().toArray();
-        Arrays.sort(sortedB);
-        for (Object branch : sortedB) {
+        for (String branch : branchNames()) {
             if (branch.equals(cbName())) {
                 System.out.println("*" + branch);
             } else {
@@ -496,46 +607,29 @@ public class GitTree implements Serializable {
             System.out.println(toRemove);
         }
         System.out.println();
+        GitStatus diff = new GitStatus(cbCom(), cbGitStage());
         System.out.println("=== Modifications Not Staged For Commit ===");
+        for (String modified : diff.modifications()) {
+            System.out.println(modified);
+        }
         System.out.println();
         System.out.println("=== Untracked Files ===");
-        Object[] sortedU = untracked.toArray();
-        Arrays.sort(sortedU);
-        for (Object untr : sortedU) {
+        for (String untr : diff.untracked()) {
             System.out.println(untr);
         }
         System.out.println();
     }
 
     /**
-     * Returns ArrayList of ancestors of CommitID.
+     * Returns ArrayList of ancestors of CommitID, itself included but not
+     * the initial commit, newest first, as found in the commit graph.
      */
     public ArrayList<String> getAncestors(String commitId) {
         ArrayList<String> par = new ArrayList<>();
-        ArrayList<String> parM = new ArrayList<>();
-        if (commitId.equals("")) {
-            return par;
-        }
-        if (_commitIDs.containsKey(commitId)) {
-            GitCommit current = _commitIDs.get(commitId);
-            if (current == null) {
-                String a;
-            } else {
-                if (current.isMerged()) {
-                    parM = getAncestors(current.getSecParentS());
-                }
-            }
-            for (String s : _idOfMsg.get("initial commit")) {
-                if (current == _commitIDs.get(s)) {
-                    return par;
-                }
+        for (String id : GitCommitGraph.ancestors(commitId)) {
+            if (GitCommitGraph.parent1(GitCommitGraph.position(id)) >= 0) {
+                par.add(id);
             }
-            ArrayList<String> result1 = getAncestors(current.getParent().getId());
-            par.add(commitId);
-            par.addAll(result1);
-        }
-        if (!parM.isEmpty()) {
-            par.addAll(parM);
         }
         return par;
     }
@@ -544,12 +638,11 @@ public class GitTree implements Serializable {
      * Returns the working directory's files.
      */
     public File[] wDFiles() {
-        File fx = new File(cbCom().getCommitDirectory());
-        int dLen = cbCom().getCommitDirectory().length();
-        int abLen = fx.getAbsolutePath().length();
-        String wPath = fx.getAbsolutePath().substring(0, abLen - dLen + 1);
-        File wDir = new File(wPath);
-        File[] fileList = wDir.listFiles();
+        List<String> names = GitWorkTree.files();
+        File[] fileList = new File[names.size()];
+        for (int i = 0; i < fileList.length; i += 1) {
+            fileList[i] = new File(names.get(i));
+        }
         return fileList;
     }
 
@@ -571,21 +664,27 @@ public class GitTree implements Serializable {
     public boolean isAncestor(GitCommit com, GitCommit split) {
         return com.equals(split);
     }
-    /** Returns First SHA ID ever.*/
-    private String getFirstID() { return firstID; }
+    /** Returns the first commit ever, the root of the current branch.*/
+    private GitCommit getFirstCommit() {
+        GitCommit com = cbCom();
+        while (com.getParent() != null) {
+            com = com.getParent();
+        }
+        return com;
+    }
+
+    /** Record holding the name of the current branch.*/
+    private static final File HEAD_FILE = Utils.join(".gitlet", "HEAD");
+    /** Record holding the staging area of the current branch.*/
+    private static final File STAGE_FILE = Utils.join(".gitlet", "stage");
 
-    /** First SHA ID ever.*/
-    private String firstID;
     /** Current GitBranch.*/
     private GitBranch _cBranch;
-    /** Mapping of GitBranch names to their GitBranch.*/
+    /** Mapping of GitBranch names to the GitBranches read or created
+     * during this command.*/
     private Map<String, GitBranch> _branchNames;
-    /** Abbreviated IDs. */
-    private HashMap<String, String> _abbID;
-    /** Mapping of commit messages to their commit's SHA-1 ID.*/
-    private Map<String, ArrayList<String>> _idOfMsg;
-    /** Mapping of SHA-1 ID's to their GitCommits.*/
-    private Map<String, GitCommit> _commitIDs;
+    /** Contents of each record as last read or written.*/
+    private Map<File, byte[]> _loaded;
     /** Arraylist of untracked files.*/
     private ArrayList<String> untracked;
     /** the remote directory/GitTree.*/
@@ -0,0 +1,298 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/** Scans of the working directory. Directory listing and file hashing
+ *  run as fork-join tasks on a pool of bounded size, so idle workers
+ *  steal directories and batches of files from busy ones. Results are
+ *  always returned in sorted order, whatever order the work finished in.
+ *  @author aarini
+ */
+class GitWorkTree {
+
+    /** Sets the number of worker threads to N, which must be positive. */
+    static void setParallelism(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        _parallelism = n;
+    }
+
+    /** Returns the number of worker threads. */
+    static int parallelism() {
+        return _parallelism;
+    }
+
+    /** Restores the default number of worker threads, one per processor. */
+    static void resetParallelism() {
+        _parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Returns the paths of all plain files in the working directory and
+     *  its subdirectories (other than .gitlet), '/'-separated and in
+     *  sorted order. */
+    static List<String> files() {
+        List<String> files = pool().invoke(new ScanTask(new File("."), ""));
+        Collections.sort(files);
+        return files;
+    }
+
+    /** Returns the SHA-1 IDs of the working files named in NAMES, by name
+     *  in sorted order, hashing them in parallel through GitIndex. Files
+     *  that do not exist are left out. */
+    static TreeMap<String, String> sha1All(Collection<String> names) {
+        ArrayList<String> todo = new ArrayList<>(names);
+        Map<String, String> result = new ConcurrentHashMap<>();
+        HashTask task = new HashTask(todo, 0, todo.size(), result);
+        if (todo.size() <= HASH_BATCH) {
+            task.compute();
+        } else {
+            pool().invoke(task);
+        }
+        return new TreeMap<>(result);
+    }
+
+    /** Returns the working files that are in the way of replacing the
+     *  contents of the working directory with those of COM, in sorted
+     *  order: files neither tracked by COM nor among STAGED, and files
+     *  tracked by COM whose contents differ from it and are not among
+     *  STAGED. */
+    static List<String> untrackedFiles(GitCommit com, Collection<String> staged) {
+        ArrayList<String> result = new ArrayList<>();
+        ArrayList<String> tracked = new ArrayList<>();
+        for (String name : files()) {
+            if (staged.contains(name)) {
+                continue;
+            }
+            if (com.contains(name)) {
+                tracked.add(name);
+            } else {
+                result.add(name);
+            }
+        }
+        for (Map.Entry<String, String> e : sha1All(tracked).entrySet()) {
+            if (!GitObjectId.matches(com.getfileSHAs().get(e.getKey()),
+                                     e.getValue())) {
+                result.add(e.getKey());
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Runs ACTION on each of ITEMS, in parallel on the worker pool and
+     *  in no particular order. */
+    static <T> void forEach(Collection<T> items, Consumer<? super T> action) {
+        if (items.size() <= HASH_BATCH) {
+            items.forEach(action);
+        } else {
+            pool().submit(() -> items.parallelStream().forEach(action)).join();
+        }
+    }
+
+    /** Returns the pool the tasks run on, creating it if needed. A pool
+     *  left over from an earlier --jobs setting is shut down first. */
+    private static synchronized ForkJoinPool pool() {
+        if (_pool == null || _pool.getParallelism() != _parallelism) {
+            if (_pool != null) {
+                _pool.shutdown();
+            }
+            _pool = new ForkJoinPool(_parallelism);
+        }
+        return _pool;
+    }
+
+    /** Returns PATH, a file name given on the command line, as the
+     *  '/'-separated path of a file in the working directory, or null if
+     *  it does not name one (it is outside the working directory, or in
+     *  .gitlet). */
+    static String normalize(String path) {
+        String name = relative(path);
+        if (name == null || name.isEmpty() || outside(name)
+            || name.equals(GITLET) || name.startsWith(GITLET + "/")) {
+            return null;
+        }
+        return name;
+    }
+
+    /** Returns true if PATH, given on the command line, stands for a
+     *  set of files rather than one: it is a directory, or it is not a
+     *  plain file and contains any of the glob characters *?[{. */
+    static boolean isPattern(String path) {
+        File f = new File(path);
+        if (f.isDirectory()) {
+            return true;
+        }
+        return !f.isFile() && path.matches(".*[*?\\[{].*");
+    }
+
+    /** Returns the files among CANDIDATES, '/'-separated names of files
+     *  in the working directory, that PATH (see isPattern) stands for,
+     *  in the order of CANDIDATES: every one under PATH if it is a
+     *  directory (all of them for "."), and otherwise every one matching
+     *  PATH as a glob, in which * and ? do not match '/' and ** matches
+     *  anything. */
+    static List<String> matching(String path, Collection<String> candidates) {
+        ArrayList<String> result = new ArrayList<>();
+        String name = relative(path);
+        if (name == null || outside(name)) {
+            return result;
+        }
+        if (new File(path).isDirectory()) {
+            String prefix = name.isEmpty() ? "" : name + "/";
+            for (String c : candidates) {
+                if (c.startsWith(prefix)) {
+                    result.add(c);
+                }
+            }
+        } else {
+            PathMatcher glob =
+                FileSystems.getDefault().getPathMatcher("glob:" + name);
+            for (String c : candidates) {
+                if (glob.matches(Paths.get(c))) {
+                    result.add(c);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns PATH relative to the working directory, normalized and
+     *  '/'-separated, and empty for the working directory itself, or
+     *  null if PATH is null. */
+    private static String relative(String path) {
+        if (path == null) {
+            return null;
+        }
+        Path p = Paths.get(path);
+        if (p.isAbsolute()) {
+            p = CWD.relativize(p);
+        }
+        return p.normalize().toString().replace(File.separatorChar, '/');
+    }
+
+    /** Returns true if NAME, as returned by relative, is outside the
+     *  working directory. */
+    private static boolean outside(String name) {
+        return name.equals("..") || name.startsWith("../");
+    }
+
+    /** Deletes the working file at PATH, if it is a plain file, along
+     *  with any directories that this leaves empty. Returns true if the
+     *  file was deleted. A directory that is not empty refuses to be
+     *  deleted, so none need be listed. */
+    static boolean delete(String path) {
+        File f = new File(path);
+        if (!f.isFile() || !f.delete()) {
+            return false;
+        }
+        for (File dir = f.getParentFile(); dir != null; dir = dir.getParentFile()) {
+            if (!dir.delete()) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /** Lists the plain files of one directory, and of its subdirectories
+     *  as subtasks that idle workers may steal. */
+    private static class ScanTask extends RecursiveTask<List<String>> {
+        /** A task listing DIR, whose files are named with PREFIX. */
+        ScanTask(File dir, String prefix) {
+            _dir = dir;
+            _prefix = prefix;
+        }
+
+        @Override
+        protected List<String> compute() {
+            ArrayList<String> result = new ArrayList<>();
+            File[] entries = _dir.listFiles();
+            if (entries == null) {
+                return result;
+            }
+            ArrayList<ScanTask> subtasks = new ArrayList<>();
+            for (File f : entries) {
+                if (f.isFile()) {
+                    result.add(_prefix + f.getName());
+                } else if (f.isDirectory() && !Files.isSymbolicLink(f.toPath())
+                           && !(_prefix.isEmpty() && f.getName().equals(GITLET))) {
+                    ScanTask sub = new ScanTask(f, _prefix + f.getName() + "/");
+                    sub.fork();
+                    subtasks.add(sub);
+                }
+            }
+            for (ScanTask sub : subtasks) {
+                result.addAll(sub.join());
+            }
+            return result;
+        }
+
+        /** Directory to list. */
+        private final File _dir;
+        /** Prefix of the names of its files. */
+        private final String _prefix;
+    }
+
+    /** Hashes a range of files, splitting it while it is large. */
+    private static class HashTask extends RecursiveAction {
+        /** A task hashing NAMES[LO .. HI-1] into RESULT. */
+        HashTask(List<String> names, int lo, int hi, Map<String, String> result) {
+            _names = names;
+            _lo = lo;
+            _hi = hi;
+            _result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > HASH_BATCH) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new HashTask(_names, _lo, mid, _result),
+                          new HashTask(_names, mid, _hi, _result));
+                return;
+            }
+            for (int i = _lo; i < _hi; i += 1) {
+                File f = new File(_names.get(i));
+                if (f.isFile()) {
+                    _result.put(_names.get(i), GitIndex.sha1(f));
+                }
+            }
+        }
+
+        /** Names of all files being hashed. */
+        private final List<String> _names;
+        /** Range of this task. */
+        private final int _lo, _hi;
+        /** Hashes by name. */
+        private final Map<String, String> _result;
+    }
+
+    /** Name of the repository directory, which is never scanned. */
+    private static final String GITLET = ".gitlet";
+    /** The working directory. */
+    private static final Path CWD = Paths.get("").toAbsolutePath();
+
+    /** Largest number of files hashed by one task without splitting. */
+    private static final int HASH_BATCH = 16;
+
+    /** Number of worker threads. */
+    private static int _parallelism = Runtime.getRuntime().availableProcessors();
+    /** The pool, or null if not yet needed. */
+    private static ForkJoinPool _pool;
+}
@@ -1,84 +1,121 @@
 package gitlet;
 
-import java.io.ObjectInputStream;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.File;
-import java.io.ObjectOutputStream;
-import java.io.IOException;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author aarini
  */
 public class Main {
 
-    /** Main function, gets input arguments ARGS.*/
+    /** Main function, gets input arguments ARGS. The command is handed
+     * to the daemon serving this repository if one is running (see
+     * GitDaemon), and otherwise run here.*/
     public static void main(String... args) {
-        if (!isNull(args)) {
-            operand = args[0];
-            setArgs(args);
-            GitTree dir = start();
-            try {
-                switch (operand) {
-                    case "init":
-                        dir = init();
-                        break;
-                    case "add":
-                        dir.add(arg1);
-                        break;
-                    case "rm":
-                        dir.remove(arg1);
-                        break;
-                    case "branch":
-                        dir.addBranch(arg1);
-                        break;
-                    case "rm-branch":
-                        dir.removeBranch(arg1);
-                        break;
-                    case "merge":
-                        dir.merge(arg1);
-                        break;
-                    case "commit":
-                        dir.commit(arg1);
-                        break;
-                    case "checkout":
-                        checkout(dir, args);
-                        break;
-                    case "find":
-                        dir.find(arg1);
-                        break;
-                    case "log":
-                        dir.log();
-                        break;
-                    case "global-log":
-                        dir.printGlobalLog();
-                        break;
-                    case "status":
-                        dir.status();
-                        break;
-                    case "reset":
-                        dir.reset(arg1);
-                        break;
-                    default:
-                        System.out.println("No command with that name exists.");
-                        break;
-                }
-            } catch (ArrayIndexOutOfBoundsException e) {
-                System.out.println("Incorrect operands.");
-            } catch (NullPointerException a) {
-                System.out.println("Not in an initialized Gitlet directory.");
+        if (args.length > 0 && args[0].equals("daemon")) {
+            GitDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+        } else if (!GitDaemon.forward(args) && !run(args)) {
+            System.out.flush();
+            System.exit(1);
+        }
+    }
+
+    /** Runs the command ARGS on the repository in the current directory,
+     * and saves it. Returns false if ARGS is a batch that failed.*/
+    static boolean run(String... args) {
+        args = setOptions(args);
+        if (args != null && !isNull(args)) {
+            if (args[0].equals("batch")) {
+                return GitBatch.main(Arrays.copyOfRange(args, 1, args.length));
             }
-            save(dir);
+            save(execute(start(), args));
         }
+        return true;
+    }
+
+    /** Returns true if ARGS, as given on the command line, is a batch
+     * (see GitBatch), once any options at its start are passed over.*/
+    static boolean isBatch(String... args) {
+        int i = 0;
+        while (i < args.length && isOption(args[i])) {
+            i += 1;
+        }
+        return i < args.length && args[i].equals("batch");
+    }
+
+    /** Returns true if ARG is an option (see setOptions).*/
+    private static boolean isOption(String arg) {
+        return arg.startsWith("--jobs=");
+    }
+
+    /** Runs the command ARGS on DIR, the repository in the current
+     * directory (null if there is none), without saving it. Returns the
+     * repository as it stands afterwards.*/
+    static GitTree execute(GitTree dir, String... args) {
+        operand = args[0];
+        setArgs(args);
+        try {
+            switch (operand) {
+                case "init":
+                    dir = init(dir);
+                    break;
+                case "add":
+                    dir.add(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "rm":
+                    dir.remove(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "branch":
+                    dir.addBranch(arg1);
+                    break;
+                case "rm-branch":
+                    dir.removeBranch(arg1);
+                    break;
+                case "merge":
+                    dir.merge(arg1);
+                    break;
+                case "commit":
+                    dir.commit(arg1);
+                    break;
+                case "checkout":
+                    checkout(dir, args);
+                    break;
+                case "find":
+                    find(dir, args);
+                    break;
+                case "log":
+                case "global-log":
+                    log(dir, args);
+                    break;
+                case "status":
+                    dir.status();
+                    break;
+                case "reset":
+                    dir.reset(arg1);
+                    break;
+                case "migrate":
+                    GitTree migrated = GitLegacy.migrate();
+                    dir = migrated == null ? dir : migrated;
+                    break;
+                default:
+                    System.out.println("No command with that name exists.");
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println("Incorrect operands.");
+        } catch (NullPointerException a) {
+            System.out.println("Not in an initialized Gitlet directory.");
+        }
+        return dir;
     }
 
     /** Returns an new Gitlet version-control system in the current directory,
-     * if one doesn't already exist.*/
-    private static GitTree init() {
+     * if one doesn't already exist, and otherwise CURRENT, the one there.*/
+    private static GitTree init(GitTree current) {
         File direc = new File(".gitlet");
         if (direc.exists()) {
             System.out.println("A Gitlet version-control system already exists in the current directory.");
-            return null;
+            return current;
         } else {
             direc.mkdirs();
             return GitTree.init();
@@ -86,16 +123,12 @@ public class Main {
     }
 
     /** Returns the Gitlet version-control system to run commands on.*/
-    private static GitTree start() {
-        File file0 = new File(".gitlet" + seper + "path");
+    static GitTree start() {
         GitTree tree = null;
-        if (file0.exists()) {
-            try {
-                ObjectInputStream input = new ObjectInputStream(new FileInputStream(file0));
-                tree = (GitTree) input.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                e.printStackTrace();
-            }
+        try {
+            tree = GitTree.load();
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
         }
         return tree;
     }
@@ -110,23 +143,35 @@ public class Main {
         return result;
     }
 
+    /** Applies the options (--jobs=N, the number of threads used to scan
+     * and hash the working directory) at the start of ARGS, and returns
+     * the remaining arguments, or null if an option is malformed.*/
+    public static String[] setOptions(String... args) {
+        int i;
+        for (i = 0; i < args.length && isOption(args[i]); i += 1) {
+            try {
+                GitWorkTree.setParallelism(
+                        Integer.parseInt(args[i].substring("--jobs=".length())));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Incorrect operands.");
+                return null;
+            }
+        }
+        return Arrays.copyOfRange(args, i, args.length);
+    }
+
     /** Sets arg1 and arg2 to the input ARGS.*/
     public static void setArgs(String... args) {
-        if (args.length >= 2) {
-            arg1 = args[1];
-        }
-        if (args.length >= 3) {
-            arg2 = args[2];
-        }
+        arg1 = args.length >= 2 ? args[1] : null;
+        arg2 = args.length >= 3 ? args[2] : null;
     }
 
     /** Saves the TREE, so it can be used again.*/
-    private static void save(GitTree tree) {
+    static void save(GitTree tree) {
         if (tree != null) {
             try {
-                (new ObjectOutputStream(new FileOutputStream(
-                        new File(".gitlet" + seper + "path")))).writeObject(tree);
-            } catch (IOException e) {
+                tree.save();
+            } catch (IllegalArgumentException e) {
                 System.out.println(e.getMessage());
             }
         }
@@ -159,6 +204,53 @@ public class Main {
         }
     }
 
+    /** Prints the IDs of the commits of TREE whose messages match the
+     * last of ARGS: the whole message, or with --substring any part of
+     * it, or with --word whole words of it.*/
+    private static void find(GitTree tree, String... args) {
+        int mode = GitMessageIndex.EXACT;
+        if (args.length == 3 && args[1].equals("--substring")) {
+            mode = GitMessageIndex.SUBSTRING;
+        } else if (args.length == 3 && args[1].equals("--word")) {
+            mode = GitMessageIndex.WORD;
+        } else if (args.length > 2) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        tree.find(args.length == 1 ? null : args[args.length - 1], mode);
+    }
+
+    /** Prints the log or global log of TREE, as named by ARGS[0], with
+     * the options --skip=N (leave out the first N commits) and
+     * --max-count=N (show at most N commits) in the rest of ARGS.*/
+    private static void log(GitTree tree, String... args) {
+        int skip = 0;
+        int max = Integer.MAX_VALUE;
+        try {
+            for (int i = 1; i < args.length; i += 1) {
+                if (args[i].startsWith("--skip=")) {
+                    skip = Integer.parseInt(args[i].substring("--skip=".length()));
+                } else if (args[i].startsWith("--max-count=")) {
+                    max = Integer.parseInt(
+                            args[i].substring("--max-count=".length()));
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            }
+            if (skip < 0 || max < 0) {
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Incorrect operands.");
+            return;
+        }
+        if (args[0].equals("log")) {
+            tree.log(skip, max);
+        } else {
+            tree.printGlobalLog(skip, max);
+        }
+    }
+
     /** Separator.*/
     private static String seper = File.separator;
     /** First operand input.*/
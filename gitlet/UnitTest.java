@@ -4,6 +4,10 @@ import ucb.junit.textui;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+
 /** The suite of all JUnit tests for the gitlet package.
  *  @author aarini
  */
@@ -20,6 +24,22 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
+    /** Commit IDs hash the names of the staged files as the stage's set
+     *  of them prints, in staging order, so that text must not change. */
+    @Test
+    public void commitIdTest() {
+        LinkedHashMap<String, GitObjectId> staged = new LinkedHashMap<>();
+        staged.put("b.txt", null);
+        staged.put("a.txt", null);
+        String parent = "bf1fbc8f3031d69a5439d5f2fb2491d815141235";
+        GitStage stage = new GitStage(parent, staged,
+                                      Arrays.asList("c.txt"));
+        Date time = new Date(1000000000000L);
+        assertEquals(Utils.sha1("[b.txt, a.txt]", parent, "two files",
+                                time.toString()),
+                     GitCommit.commitId(stage, parent, "two files", time));
+    }
+
 }
 
 